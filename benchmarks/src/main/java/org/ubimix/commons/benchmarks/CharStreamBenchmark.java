@@ -0,0 +1,123 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
+import org.ubimix.commons.parsers.SimpleCharLoader;
+import org.ubimix.commons.parsers.io.ReaderCharLoader;
+
+/**
+ * Measures character-by-character and bulk reading of {@link CharStream}
+ * instances with different sources.
+ * 
+ * @author kotelnikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharStreamBenchmark {
+
+    private static final ICharMatcher NOT_NEW_LINE = new ICharMatcher() {
+        public boolean match(char ch) {
+            return ch != '\n';
+        }
+    };
+
+    @Param({ "256", "16384", "1048576" })
+    public int fSize;
+
+    private CharStream fStream;
+
+    private String fText;
+
+    private int read(CharStream stream) {
+        int hash = 0;
+        for (char ch = stream.getChar(); !stream.isTerminated(); stream
+            .incPos(), ch = stream.getChar()) {
+            hash = 31 * hash + ch;
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int readDirect() {
+        return read(new CharStream(fText, false));
+    }
+
+    @Benchmark
+    public int readLoader() {
+        return read(new CharStream(new SimpleCharLoader(fText), false));
+    }
+
+    @Benchmark
+    public int readReader() {
+        return read(new CharStream(
+            new ReaderCharLoader(new StringReader(fText)),
+            false));
+    }
+
+    @Benchmark
+    public int readReset() {
+        fStream.reset(fText);
+        return read(fStream);
+    }
+
+    @Benchmark
+    public int readTrackingPositions() {
+        CharStream stream = new CharStream(fText, true);
+        read(stream);
+        return stream.getPointer().line;
+    }
+
+    @Setup
+    public void setup() {
+        fText = new Corpus().newText(fSize);
+        fStream = new CharStream(fText, false);
+    }
+
+    @Benchmark
+    public int skipLines() {
+        CharStream stream = new CharStream(new SimpleCharLoader(fText), true);
+        stream.getChar();
+        int lines = 0;
+        while (!stream.isTerminated()) {
+            stream.skipWhile(NOT_NEW_LINE);
+            stream.incPos();
+            lines++;
+        }
+        return lines;
+    }
+
+}
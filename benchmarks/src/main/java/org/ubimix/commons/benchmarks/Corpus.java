@@ -0,0 +1,293 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class generates deterministic synthetic inputs for benchmarks. Each
+ * generated document has approximately the requested size in characters. The
+ * same size and the same seed always give the same document, so results of
+ * different runs can be compared.
+ * 
+ * @author kotelnikov
+ */
+public class Corpus {
+
+    /**
+     * The default seed of the random generator
+     */
+    public static final long DEFAULT_SEED = 0x5EED;
+
+    private static final String[] WORDS = {
+        "alpha",
+        "bravo",
+        "charlie",
+        "delta",
+        "echo",
+        "foxtrot",
+        "golf",
+        "hotel",
+        "india",
+        "juliett",
+        "kilo",
+        "lima",
+        "mike",
+        "november",
+        "oscar",
+        "papa",
+        "quebec",
+        "romeo",
+        "sierra",
+        "tango",
+        "uniform",
+        "victor",
+        "whiskey",
+        "xray",
+        "yankee",
+        "zulu" };
+
+    private Random fRandom;
+
+    public Corpus() {
+        this(DEFAULT_SEED);
+    }
+
+    public Corpus(long seed) {
+        fRandom = new Random(seed);
+    }
+
+    private void appendJSONObject(StringBuilder buf, int depth, int count) {
+        buf.append('{');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append("\n").append('"').append(nextWord()).append(i).append(
+                "\": ");
+            appendJSONValue(buf, depth);
+        }
+        buf.append('}');
+    }
+
+    private void appendJSONValue(StringBuilder buf, int depth) {
+        int type = fRandom.nextInt(depth < 3 ? 6 : 4);
+        switch (type) {
+            case 0:
+                buf.append(fRandom.nextInt(100000));
+                break;
+            case 1:
+                buf.append(fRandom.nextInt(1000)).append('.').append(
+                    fRandom.nextInt(1000));
+                break;
+            case 2:
+                buf.append(fRandom.nextBoolean() ? "true" : "false");
+                break;
+            case 3:
+                buf.append('"');
+                appendWords(buf, 1 + fRandom.nextInt(6));
+                if (fRandom.nextInt(4) == 0) {
+                    buf.append("\\n\\\"").append(nextWord()).append("\\\"");
+                }
+                buf.append('"');
+                break;
+            case 4:
+                buf.append('[');
+                for (int i = fRandom.nextInt(6); i >= 0; i--) {
+                    appendJSONValue(buf, depth + 1);
+                    if (i > 0) {
+                        buf.append(", ");
+                    }
+                }
+                buf.append(']');
+                break;
+            default:
+                appendJSONObject(buf, depth + 1, 1 + fRandom.nextInt(5));
+                break;
+        }
+    }
+
+    private void appendWords(StringBuilder buf, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                buf.append(' ');
+            }
+            buf.append(nextWord());
+        }
+    }
+
+    /**
+     * Returns a list of mail addresses like
+     * <code>"Alpha Bravo" &lt;alpha.bravo@charlie.com&gt;, delta@echo.org</code>
+     * 
+     * @param size the approximate size of the result
+     * @return a list of mail addresses
+     */
+    public String newAddressList(int size) {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < size) {
+            if (buf.length() > 0) {
+                buf.append(fRandom.nextBoolean() ? ", " : "; ");
+            }
+            String first = nextWord();
+            String last = nextWord();
+            String host = nextWord() + (fRandom.nextBoolean() ? ".com" : ".org");
+            if (fRandom.nextBoolean()) {
+                buf.append(first).append(' ').append(last).append(" <");
+                buf.append(first).append('.').append(last).append('@');
+                buf.append(host).append('>');
+            } else {
+                buf.append(first).append('@').append(host);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns a JSON object containing nested objects, arrays, strings and
+     * numbers.
+     * 
+     * @param size the approximate size of the result
+     * @return a JSON object
+     */
+    public String newJSON(int size) {
+        StringBuilder buf = new StringBuilder();
+        buf.append('{');
+        int i = 0;
+        while (buf.length() < size) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append("\n\"").append(nextWord()).append(i++).append("\": ");
+            appendJSONObject(buf, 1, 1 + fRandom.nextInt(5));
+        }
+        buf.append('}');
+        return buf.toString();
+    }
+
+    /**
+     * Returns a string with one "key=value" pair per line which can be read
+     * by the StringUtil#readMap method.
+     * 
+     * @param size the approximate size of the result
+     * @return a serialized map
+     */
+    public String newProperties(int size) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; buf.length() < size; i++) {
+            buf.append(nextWord()).append('.').append(i).append(" = ");
+            appendWords(buf, 1 + fRandom.nextInt(8));
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns a search query containing simple words, quoted phrases,
+     * prefixed tokens and groups.
+     * 
+     * @param size the approximate size of the result
+     * @return a search query
+     */
+    public String newQuery(int size) {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < size) {
+            if (buf.length() > 0) {
+                buf.append(' ');
+            }
+            switch (fRandom.nextInt(4)) {
+                case 0:
+                    buf.append(nextWord());
+                    break;
+                case 1:
+                    buf.append(nextWord()).append("='");
+                    appendWords(buf, 2);
+                    buf.append('\'');
+                    break;
+                case 2:
+                    buf.append(nextWord()).append("=(");
+                    appendWords(buf, 3);
+                    buf.append(')');
+                    break;
+                default:
+                    buf.append('"');
+                    appendWords(buf, 2);
+                    buf.append('"');
+                    break;
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns a template with "${name}" references to variables defined in
+     * the map returned by the {@link #newVariables(int)} method.
+     * 
+     * @param size the approximate size of the result
+     * @param variables the number of different variables
+     * @return a template string
+     */
+    public String newTemplate(int size, int variables) {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < size) {
+            buf.append(nextWord()).append("/${var");
+            buf.append(fRandom.nextInt(variables)).append("}/");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns a multi-line text.
+     * 
+     * @param size the approximate size of the result
+     * @return a text
+     */
+    public String newText(int size) {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < size) {
+            appendWords(buf, 1 + fRandom.nextInt(12));
+            buf.append(fRandom.nextInt(4) == 0 ? "\r\n" : "\n");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns values of variables used by templates. Some values reference
+     * other variables.
+     * 
+     * @param variables the number of variables
+     * @return a map of variable values
+     */
+    public Map<String, String> newVariables(int variables) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < variables; i++) {
+            String value = nextWord();
+            if (i > 0 && fRandom.nextBoolean()) {
+                value += "-${var" + fRandom.nextInt(i) + "}";
+            }
+            map.put("var" + i, value);
+        }
+        return map;
+    }
+
+    private String nextWord() {
+        return WORDS[fRandom.nextInt(WORDS.length)];
+    }
+
+}
@@ -0,0 +1,31 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+/**
+ * Messages used by the {@link MessageUtilBenchmark}. Values are defined in
+ * the "IBenchmarkMessages.properties" file.
+ * 
+ * @author kotelnikov
+ */
+public interface IBenchmarkMessages {
+
+    String error(String message, int code);
+
+    String sayHello();
+
+}
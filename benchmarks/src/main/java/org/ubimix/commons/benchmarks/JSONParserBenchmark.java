@@ -0,0 +1,156 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.SimpleCharLoader;
+import org.ubimix.commons.parsers.json.CBORParser;
+import org.ubimix.commons.parsers.json.CBORWriter;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONTapePlayer;
+import org.ubimix.commons.parsers.json.JSONTapeRecorder;
+import org.ubimix.commons.parsers.json.UTF8JSONParser;
+
+/**
+ * Measures parsing of JSON documents of different sizes.
+ * 
+ * @author kotelnikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONParserBenchmark {
+
+    /**
+     * This listener gives all parsed properties and values to a blackhole.
+     */
+    public static class BlackholeListener extends JSONListener {
+
+        private Blackhole fBlackhole;
+
+        public BlackholeListener(Blackhole blackhole) {
+            fBlackhole = blackhole;
+        }
+
+        @Override
+        public void beginObjectProperty(String property) {
+            fBlackhole.consume(property);
+        }
+
+        @Override
+        public void onValue(String value) {
+            fBlackhole.consume(value);
+        }
+
+    }
+
+    private byte[] fBytes;
+
+    private byte[] fCBOR;
+
+    private CBORParser fCBORParser;
+
+    private String fJSON;
+
+    private JSONParser fParser;
+
+    private JSONParser fStrictParser;
+
+    private byte[] fTape;
+
+    private JSONTapePlayer fTapePlayer;
+
+    private UTF8JSONParser fUTF8Parser;
+
+    @Param({ "256", "16384", "1048576" })
+    public int fSize;
+
+    @Benchmark
+    public void parseCBOR(Blackhole blackhole) {
+        fCBORParser.parse(fCBOR, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void parseLoader(Blackhole blackhole) {
+        CharStream stream = new CharStream(new SimpleCharLoader(fJSON), false);
+        fParser.parse(stream, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void parseNewParser(Blackhole blackhole) {
+        new JSONParser().parse(fJSON, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void parseString(Blackhole blackhole) {
+        fParser.parse(fJSON, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void parseStrict(Blackhole blackhole) {
+        fStrictParser.parse(fJSON, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void parseUTF8(Blackhole blackhole) {
+        fUTF8Parser.parse(fBytes, new BlackholeListener(blackhole));
+    }
+
+    @Benchmark
+    public void playTape(Blackhole blackhole) {
+        fTapePlayer.play(fTape, new BlackholeListener(blackhole));
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        fJSON = new Corpus().newJSON(fSize);
+        fBytes = fJSON.getBytes("UTF-8");
+        fParser = new JSONParser();
+        fStrictParser = new JSONParser(true);
+        fUTF8Parser = new UTF8JSONParser();
+        JSONTapeRecorder recorder = new JSONTapeRecorder();
+        fParser.parse(fJSON, recorder);
+        fTape = recorder.toByteArray();
+        fTapePlayer = new JSONTapePlayer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out);
+        fParser.parse(fJSON, writer);
+        writer.flush();
+        fCBOR = out.toByteArray();
+        fCBORParser = new CBORParser();
+    }
+
+}
@@ -0,0 +1,218 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.commons.parsers.json.CBORWriter;
+import org.ubimix.commons.parsers.json.IJSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONSerializer;
+import org.ubimix.commons.parsers.json.JSONWriter;
+
+/**
+ * Measures the output of {@link JSONSerializer}. Parser events are recorded
+ * once and replayed for each invocation, so the parsing time is not included
+ * in results.
+ * 
+ * @author kotelnikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONSerializerBenchmark {
+
+    /**
+     * Records parser events and replays them to other listeners.
+     */
+    public static class EventRecorder implements IJSONListener {
+
+        private static final int BEGIN_ARRAY = 0;
+
+        private static final int BEGIN_ARRAY_ELEMENT = 1;
+
+        private static final int BEGIN_OBJECT = 2;
+
+        private static final int BEGIN_OBJECT_PROPERTY = 3;
+
+        private static final int END_ARRAY = 4;
+
+        private static final int END_ARRAY_ELEMENT = 5;
+
+        private static final int END_OBJECT = 6;
+
+        private static final int END_OBJECT_PROPERTY = 7;
+
+        private static final int VALUE = 8;
+
+        private List<String> fArgs = new ArrayList<String>();
+
+        private List<Integer> fEvents = new ArrayList<Integer>();
+
+        private void add(int event, String arg) {
+            fEvents.add(event);
+            fArgs.add(arg);
+        }
+
+        public void beginArray() {
+            add(BEGIN_ARRAY, null);
+        }
+
+        public void beginArrayElement() {
+            add(BEGIN_ARRAY_ELEMENT, null);
+        }
+
+        public void beginObject() {
+            add(BEGIN_OBJECT, null);
+        }
+
+        public void beginObjectProperty(String property) {
+            add(BEGIN_OBJECT_PROPERTY, property);
+        }
+
+        public void endArray() {
+            add(END_ARRAY, null);
+        }
+
+        public void endArrayElement() {
+            add(END_ARRAY_ELEMENT, null);
+        }
+
+        public void endObject() {
+            add(END_OBJECT, null);
+        }
+
+        public void endObjectProperty(String property) {
+            add(END_OBJECT_PROPERTY, property);
+        }
+
+        public void onValue(String value) {
+            add(VALUE, value);
+        }
+
+        public void replay(IJSONListener listener) {
+            int size = fEvents.size();
+            for (int i = 0; i < size; i++) {
+                String arg = fArgs.get(i);
+                switch (fEvents.get(i)) {
+                    case BEGIN_ARRAY:
+                        listener.beginArray();
+                        break;
+                    case BEGIN_ARRAY_ELEMENT:
+                        listener.beginArrayElement();
+                        break;
+                    case BEGIN_OBJECT:
+                        listener.beginObject();
+                        break;
+                    case BEGIN_OBJECT_PROPERTY:
+                        listener.beginObjectProperty(arg);
+                        break;
+                    case END_ARRAY:
+                        listener.endArray();
+                        break;
+                    case END_ARRAY_ELEMENT:
+                        listener.endArrayElement();
+                        break;
+                    case END_OBJECT:
+                        listener.endObject();
+                        break;
+                    case END_OBJECT_PROPERTY:
+                        listener.endObjectProperty(arg);
+                        break;
+                    default:
+                        listener.onValue(arg);
+                        break;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Serializes JSON events in a string builder.
+     */
+    public static class StringSerializer extends JSONSerializer {
+
+        private StringBuilder fBuf = new StringBuilder();
+
+        @Override
+        protected void print(String string) {
+            fBuf.append(string);
+        }
+
+        @Override
+        public String toString() {
+            return fBuf.toString();
+        }
+
+    }
+
+    private EventRecorder fRecorder;
+
+    @Param({ "256", "16384", "1048576" })
+    public int fSize;
+
+    @Benchmark
+    public String serialize() {
+        StringSerializer serializer = new StringSerializer();
+        fRecorder.replay(serializer);
+        return serializer.toString();
+    }
+
+    @Benchmark
+    public byte[] serializeCBOR() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out);
+        fRecorder.replay(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String serializeWriter() {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        fRecorder.replay(writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    @Setup
+    public void setup() {
+        String json = new Corpus().newJSON(fSize);
+        fRecorder = new EventRecorder();
+        new JSONParser().parse(json, fRecorder);
+    }
+
+}
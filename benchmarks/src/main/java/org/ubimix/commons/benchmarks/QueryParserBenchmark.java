@@ -0,0 +1,78 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ubimix.commons.parsers.query.QueryParser;
+import org.ubimix.commons.parsers.query.QueryParserListener;
+
+/**
+ * Measures parsing of search queries.
+ * 
+ * @author kotelnikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParserBenchmark {
+
+    private QueryParser fParser;
+
+    private String fQuery;
+
+    @Param({ "64", "1024", "65536" })
+    public int fSize;
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        fParser.parse(fQuery, new QueryParserListener() {
+            public void beginToken(String prefix) {
+                blackhole.consume(prefix);
+            }
+
+            public void endToken(String prefix) {
+            }
+
+            public void onToken(String prefix, String token) {
+                blackhole.consume(token);
+            }
+        });
+    }
+
+    @Setup
+    public void setup() {
+        fQuery = new Corpus().newQuery(fSize);
+        fParser = new QueryParser();
+    }
+
+}
@@ -0,0 +1,97 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ubimix.commons.strings.StringUtil;
+import org.ubimix.commons.strings.StringUtil.IVariableProvider;
+
+/**
+ * Measures string serialization, map reading and property resolution
+ * methods of {@link StringUtil}.
+ * 
+ * @author kotelnikov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilBenchmark {
+
+    private static final int VARIABLES = 32;
+
+    private String fProperties;
+
+    private IVariableProvider fProvider;
+
+    @Param({ "256", "16384", "1048576" })
+    public int fSize;
+
+    private String fTemplate;
+
+    private String fText;
+
+    @Benchmark
+    public Map<String, String> readMap() {
+        return StringUtil.readMap(fProperties);
+    }
+
+    @Benchmark
+    public String resolveProperty() {
+        return StringUtil.resolveProperty(fTemplate, fProvider);
+    }
+
+    @Benchmark
+    public String serializeString() {
+        return StringUtil.serializeString(fText);
+    }
+
+    @Benchmark
+    public String serializeStringEscapingSpaces() {
+        return StringUtil.serializeString(fText, true);
+    }
+
+    @Setup
+    public void setup() {
+        Corpus corpus = new Corpus();
+        fText = corpus.newText(fSize);
+        fProperties = corpus.newProperties(fSize);
+        fTemplate = corpus.newTemplate(fSize, VARIABLES);
+        final Map<String, String> variables = corpus.newVariables(VARIABLES);
+        fProvider = new IVariableProvider() {
+            public String getValue(String name) {
+                return variables.get(name);
+            }
+        };
+    }
+
+}
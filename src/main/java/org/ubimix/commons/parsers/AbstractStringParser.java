@@ -16,6 +16,8 @@
  * ************************************************************************** */
 package org.ubimix.commons.parsers;
 
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
+
 /**
  * @author kotelnikov
  */
@@ -23,6 +25,26 @@ public class AbstractStringParser {
 
     protected static final char NULL = '\0';
 
+    /**
+     * This matcher accepts delimiters defined by the
+     * {@link #isDelimiter(char)} method.
+     */
+    protected final ICharMatcher fDelimiterMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isDelimiter(ch);
+        }
+    };
+
+    /**
+     * This matcher accepts spaces defined by the {@link #isSpace(char)}
+     * method.
+     */
+    protected final ICharMatcher fSpaceMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isSpace(ch);
+        }
+    };
+
     protected int appendChar(StringBuilder buf, char ch, int spaceCounter) {
         if (isSpace(ch)) {
             spaceCounter++;
@@ -94,21 +116,19 @@ public class AbstractStringParser {
             stream.incPos();
             StringBuilder builder = new StringBuilder();
             char quot = ch;
-            boolean escaped = false;
-            for (; !stream.isTerminated(); stream.incPos()) {
+            while (!stream.isTerminated()) {
+                stream.readUntil(quot, escapeChar, builder);
+                if (stream.isTerminated()) {
+                    break;
+                }
                 ch = stream.getChar();
-                if (escaped) {
-                    builder.append(ch);
-                    escaped = false;
-                } else {
-                    if (ch == quot) {
-                        stream.incPos();
-                        break;
-                    }
-                    if (escaped = (ch == escapeChar)) {
-                        continue;
-                    }
-                    builder.append(ch);
+                stream.incPos();
+                if (ch == quot) {
+                    break;
+                }
+                if (!stream.isTerminated()) {
+                    builder.append(stream.getChar());
+                    stream.incPos();
                 }
             }
             result = builder.toString();
@@ -123,13 +143,7 @@ public class AbstractStringParser {
     }
 
     protected boolean skipDelimiter(CharStream stream) {
-        boolean result = false;
-        for (char ch = stream.getChar(); !stream.isTerminated()
-            && isDelimiter(ch); stream.incPos()) {
-            ch = stream.getChar();
-            result = true;
-        }
-        return result;
+        return stream.skipWhile(fDelimiterMatcher) > 0;
     }
 
     protected int skipQuot(char[] array, int pos) {
@@ -189,6 +203,7 @@ public class AbstractStringParser {
         int spaceCounter = 0;
         boolean escaped = false;
         for (; quot != NULL && !array.isTerminated(); array.incPos()) {
+            array.checkLimit(buf.length());
             ch = array.getChar();
             if (escaped) {
                 ch = getEscapedSymbol(ch);
@@ -215,13 +230,7 @@ public class AbstractStringParser {
     }
 
     protected boolean skipSpaces(CharStream stream) {
-        boolean result = false;
-        char ch = stream.getChar();
-        while (isSpace(ch) && stream.incPos()) {
-            ch = stream.getChar();
-            result = true;
-        }
-        return result;
+        return stream.skipWhile(fSpaceMatcher) > 0;
     }
 
 }
\ No newline at end of file
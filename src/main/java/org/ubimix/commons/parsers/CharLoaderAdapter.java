@@ -0,0 +1,82 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers;
+
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+import org.ubimix.commons.parsers.CharStream.ICharLoader;
+
+/**
+ * This adapter gives a block-oriented access to loaders returning characters
+ * one by one.
+ * 
+ * @author kotelnikov
+ */
+public class CharLoaderAdapter implements ICharBlockLoader {
+
+    private ICharLoader fLoader;
+
+    public CharLoaderAdapter(ICharLoader loader) {
+        fLoader = loader;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CharLoaderAdapter)) {
+            return false;
+        }
+        CharLoaderAdapter o = (CharLoaderAdapter) obj;
+        return fLoader.equals(o.fLoader);
+    }
+
+    @Override
+    public int hashCode() {
+        return fLoader.hashCode();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharBlockLoader#read(char[],
+     *      int, int)
+     */
+    public int read(char[] buf, int offset, int len) {
+        int count = 0;
+        while (count < len) {
+            int ch = fLoader.readNext();
+            if (ch < 0) {
+                break;
+            }
+            buf[offset + count] = (char) ch;
+            count++;
+        }
+        return count > 0 || len == 0 ? count : -1;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharLoader#readNext()
+     */
+    public int readNext() {
+        return fLoader.readNext();
+    }
+
+    @Override
+    public String toString() {
+        return fLoader.toString();
+    }
+
+}
@@ -21,55 +21,139 @@ package org.ubimix.commons.parsers;
  */
 public final class CharStream {
 
+    /**
+     * Loaders of this type are able to copy a whole block of characters at
+     * once. {@link CharStream} uses them to refill its internal buffer block
+     * by block instead of calling the {@link #readNext()} method for each
+     * character.
+     */
+    public interface ICharBlockLoader extends ICharLoader {
+
+        /**
+         * Copies the next characters of the source to the given array. This
+         * method blocks until at least one character is available or the end
+         * of the source is reached; it never returns <code>0</code> for a
+         * positive length. Sources which can have no data yet (like
+         * non-blocking channels) should be read by the caller and given to
+         * the stream when the data arrive.
+         * 
+         * @param buf the destination array
+         * @param offset the position in the array of the first character to
+         *        write
+         * @param len the maximal number of characters to write
+         * @return the number of copied characters (at least one if the length
+         *         is positive) or <code>-1</code> if the end of the source is
+         *         reached
+         */
+        int read(char[] buf, int offset, int len);
+
+    }
+
     public interface ICharLoader {
         int readNext();
     }
 
+    /**
+     * Matchers define classes of characters for bulk scanning methods like
+     * {@link CharStream#skipWhile(ICharMatcher)} or
+     * {@link CharStream#readUntil(ICharMatcher, StringBuilder)}.
+     */
+    public interface ICharMatcher {
+
+        /**
+         * @param ch the character to check
+         * @return <code>true</code> if the given character belongs to the
+         *         class defined by this matcher
+         */
+        boolean match(char ch);
+
+    }
+
     public class Marker {
 
         private Pointer fMarker = fPointer;
 
+        private int fMarkerColumn = fColumn;
+
+        private int fMarkerLine = fLine;
+
+        private int fMarkerPos = fPos;
+
         public void close(boolean reset) {
             if (reset) {
+                setPosition(fMarkerPos, fMarkerLine, fMarkerColumn);
                 fPointer = fMarker;
             }
             fMarkCounter--;
             if (fMarkCounter == 0) {
-                fFirstMark = fPointer;
+                fFirstMark = fPos;
+                shrinkBuffer();
             }
         }
 
         public Pointer getPointer() {
+            if (fMarker == null) {
+                fMarker = new Pointer(fMarkerPos, fMarkerLine, fMarkerColumn);
+            }
             return fMarker;
         }
 
-        public String getSubstring() {
-            return getSubstring(fMarker, fPointer.pos - fMarker.pos);
-        }
-
-        public String getSubstring(int len) {
-            return getSubstring(fMarker, len);
-        }
-
-        public String getSubstring(int pos, int len) {
+        /**
+         * Checks that the specified fragment is available for this marker and
+         * returns the length of the fragment truncated to the current
+         * position.
+         */
+        private int checkRange(int pos, int len) {
             if (len < 0) {
                 throw new IllegalArgumentException("Length is negative");
             }
-            if (pos < fMarker.pos) {
+            if (pos < fMarkerPos) {
                 throw new IllegalArgumentException(
                     "Pointer is before the marker");
             }
-            if (pos > fPointer.pos) {
+            if (pos > fPos) {
                 throw new IllegalArgumentException(
                     "Pointer is after the end of the stream");
             }
-            len = Math.min(fPointer.pos - pos, len);
-            StringBuilder buf = new StringBuilder();
-            for (int i = 0; i < len; i++) {
-                char ch = fBuf[(pos + i) % fBuf.length];
-                buf.append(ch);
-            }
-            return buf.toString();
+            return Math.min(fPos - pos, len);
+        }
+
+        /**
+         * Returns a view of characters between this marker and the current
+         * position of the stream. The returned sequence does not copy
+         * characters; it is valid only while this marker is open.
+         * 
+         * @return a view of characters between this marker and the current
+         *         position of the stream
+         */
+        public Slice getSlice() {
+            return getSlice(fMarkerPos, fPos - fMarkerPos);
+        }
+
+        public Slice getSlice(int len) {
+            return getSlice(fMarkerPos, len);
+        }
+
+        public Slice getSlice(int pos, int len) {
+            len = checkRange(pos, len);
+            return new Slice(pos, len);
+        }
+
+        public Slice getSlice(Pointer begin, Pointer end) {
+            return getSlice(begin.pos, end.pos - begin.pos);
+        }
+
+        public String getSubstring() {
+            return getSubstring(fMarkerPos, fPos - fMarkerPos);
+        }
+
+        public String getSubstring(int len) {
+            return getSubstring(fMarkerPos, len);
+        }
+
+        public String getSubstring(int pos, int len) {
+            len = checkRange(pos, len);
+            return getString(pos, len);
         }
 
         public String getSubstring(Pointer pos, int len) {
@@ -82,8 +166,8 @@ public final class CharStream {
 
         @Override
         public String toString() {
-            int len = fPointer.pos - fMarker.pos;
-            return "Marker(" + fMarker + ":'" + getSubstring(len) + "')";
+            int len = fPos - fMarkerPos;
+            return "Marker(" + getPointer() + ":'" + getSubstring(len) + "')";
         }
     }
 
@@ -154,46 +238,366 @@ public final class CharStream {
 
     }
 
-    private static final int DELTA = 2;
+    /**
+     * A character sequence giving access to a fragment of the internal buffer
+     * of the stream without copying it. Slices are returned by markers and
+     * they are valid only while the corresponding marker is open.
+     */
+    public class Slice implements CharSequence {
+
+        private int fLength;
+
+        private int fStart;
+
+        private Slice(int start, int length) {
+            fStart = start;
+            fLength = length;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= fLength) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return fBuf[(fStart + index) & fMask];
+        }
+
+        /**
+         * Compares the content of this slice with the specified sequence
+         * 
+         * @param str the sequence to compare with
+         * @return <code>true</code> if this slice contains exactly the same
+         *         characters as the given sequence
+         */
+        public boolean contentEquals(CharSequence str) {
+            if (str.length() != fLength) {
+                return false;
+            }
+            for (int i = 0; i < fLength; i++) {
+                if (str.charAt(i) != fBuf[(fStart + i) & fMask]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Slice)) {
+                return false;
+            }
+            return contentEquals((Slice) obj);
+        }
+
+        /**
+         * Returns the hash code of this slice. The returned value is the same
+         * as the hash code of the string with the same content.
+         * 
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            int hash = 0;
+            for (int i = 0; i < fLength; i++) {
+                hash = 31 * hash + fBuf[(fStart + i) & fMask];
+            }
+            return hash;
+        }
+
+        public int length() {
+            return fLength;
+        }
+
+        public Slice subSequence(int start, int end) {
+            if (start < 0 || end > fLength || start > end) {
+                throw new IndexOutOfBoundsException("Range: ["
+                    + start
+                    + ", "
+                    + end
+                    + ")");
+            }
+            return new Slice(fStart + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return getString(fStart, fLength);
+        }
+    }
+
+    /**
+     * The default initial capacity of the internal buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The default maximal capacity of the internal buffer.
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 1 << 30;
+
+    /**
+     * This buffer is used by cleared streams.
+     */
+    private static final char[] EMPTY_BUFFER = new char[0];
+
+    /**
+     * The minimal number of free characters in the buffer required to load a
+     * new block. If there is no such space then the buffer is extended.
+     */
+    private static final int MIN_BLOCK_SIZE = 16;
 
     private static boolean equals(Object first, Object second) {
         return first == null || second == null ? first == second : first
             .equals(second);
     }
 
+    /**
+     * Returns the smallest power of two which is greater or equal to the
+     * given size.
+     */
+    private static int toCapacity(int size) {
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
     private Pointer fBeginContext = Pointer.START;
 
-    private char[] fBuf = new char[10];
+    private ICharBlockLoader fBlockLoader;
+
+    private char[] fBuf;
 
-    private Pointer fEnd;
+    /**
+     * The column of the current character
+     */
+    private int fColumn;
+
+    /**
+     * If this flag is <code>true</code> then the whole content of the stream
+     * is in the buffer; there is no loader and buffer indexes are equal to
+     * stream positions.
+     */
+    private boolean fDirect;
+
+    /**
+     * The position of the end of the stream or <code>-1</code> if the end of
+     * the stream is not reached yet.
+     */
+    private int fEnd = -1;
+
+    private int fFirstMark;
+
+    /**
+     * The initial capacity of the buffer; the buffer is reduced to this size
+     * when all markers are closed.
+     */
+    private int fInitialCapacity;
 
-    private Pointer fFirstMark;
+    /**
+     * The line of the current character
+     */
+    private int fLine;
 
     private ICharLoader fLoader;
 
     private int fMarkCounter;
 
-    private Pointer fPointer = null;
+    /**
+     * The mask used to transform stream positions to buffer indexes. The size
+     * of the buffer is always a power of two so this mask is equal to the
+     * buffer size minus one. In the direct mode all bits of the mask are set.
+     */
+    private int fMask;
+
+    /**
+     * The maximal number of characters which can be kept in the buffer.
+     */
+    private int fMaxCapacity;
+
+    /**
+     * The pointer object corresponding to the current position. It is created
+     * on demand by the {@link #getPointer()} method and it is reset each time
+     * when the current position changes.
+     */
+    private Pointer fPointer;
+
+    /**
+     * The current position in the stream; <code>-1</code> if the stream was
+     * not read yet.
+     */
+    private int fPos = -1;
+
+    /**
+     * If this flag is <code>true</code> then the buffer was given by the
+     * caller; it is never modified by the stream.
+     */
+    private boolean fShared;
 
-    private Pointer fTop = Pointer.START;
+    /**
+     * The position of the next character to load
+     */
+    private int fTop;
+
+    /**
+     * If this flag is <code>false</code> then lines and columns are not
+     * counted and pointers contain only absolute positions.
+     */
+    private boolean fTrackPositions;
+
+    private CharStream(boolean trackPositions) {
+        fInitialCapacity = DEFAULT_CAPACITY;
+        fMaxCapacity = DEFAULT_MAX_CAPACITY;
+        fTrackPositions = trackPositions;
+    }
+
+    /**
+     * Creates a stream reading characters directly from the given array. The
+     * array is not copied and it should not be modified while the stream is
+     * used.
+     * 
+     * @param array the characters to read
+     */
+    public CharStream(char[] array) {
+        this(array, array.length, true);
+    }
+
+    /**
+     * Creates a stream reading characters directly from the given array. The
+     * array is not copied and it should not be modified while the stream is
+     * used.
+     * 
+     * @param array the characters to read
+     * @param length the number of characters to read from the array
+     * @param trackPositions if this flag is <code>false</code> then the
+     *        stream does not count lines and columns
+     */
+    public CharStream(char[] array, int length, boolean trackPositions) {
+        this(trackPositions);
+        reset(array, length);
+    }
+
+    /**
+     * Creates a stream reading the given in-memory characters. The content is
+     * copied once to the internal buffer and it is read without any loader.
+     * 
+     * @param str the characters to read
+     */
+    public CharStream(CharSequence str) {
+        this(str, true);
+    }
+
+    /**
+     * @param str the characters to read
+     * @param trackPositions if this flag is <code>false</code> then the
+     *        stream does not count lines and columns
+     * @see #CharStream(CharSequence)
+     */
+    public CharStream(CharSequence str, boolean trackPositions) {
+        this(trackPositions);
+        reset(str);
+    }
 
     public CharStream(ICharLoader loader) {
-        fLoader = loader;
+        this(loader, DEFAULT_CAPACITY, DEFAULT_MAX_CAPACITY, true);
+    }
+
+    /**
+     * @param loader the loader providing characters for this stream
+     * @param trackPositions if this flag is <code>false</code> then the
+     *        stream does not count lines and columns; in this case the
+     *        {@link Pointer#line} and {@link Pointer#column} fields of all
+     *        pointers are equal to <code>-1</code>
+     */
+    public CharStream(ICharLoader loader, boolean trackPositions) {
+        this(loader, DEFAULT_CAPACITY, DEFAULT_MAX_CAPACITY, trackPositions);
+    }
+
+    public CharStream(ICharLoader loader, int initialCapacity, int maxCapacity) {
+        this(loader, initialCapacity, maxCapacity, true);
+    }
+
+    /**
+     * @param loader the loader providing characters for this stream
+     * @param initialCapacity the initial size of the internal buffer; the
+     *        buffer is reduced to this size each time when all markers are
+     *        closed
+     * @param maxCapacity the maximal number of characters kept by the
+     *        stream; if this limit is exceeded then a
+     *        {@link CharStreamLimitException} is thrown
+     * @param trackPositions if this flag is <code>false</code> then the
+     *        stream does not count lines and columns
+     */
+    public CharStream(
+        ICharLoader loader,
+        int initialCapacity,
+        int maxCapacity,
+        boolean trackPositions) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException(
+                "Initial capacity should be a positive value");
+        }
+        if (maxCapacity < initialCapacity) {
+            throw new IllegalArgumentException(
+                "Maximal capacity is less than the initial capacity");
+        }
+        fInitialCapacity = toCapacity(Math.max(
+            initialCapacity,
+            MIN_BLOCK_SIZE * 2));
+        fMaxCapacity = maxCapacity;
+        fTrackPositions = trackPositions;
+        setBuffer(new char[fInitialCapacity]);
+        setLoader(loader);
     }
 
     public CharStream(String str) {
-        this(new SimpleCharLoader(str));
+        this((CharSequence) str, true);
+    }
+
+    public CharStream(String str, boolean trackPositions) {
+        this((CharSequence) str, trackPositions);
+    }
+
+    /**
+     * Checks that a token of the specified length does not exceed the maximal
+     * capacity of this stream. Parsers accumulating tokens outside of the
+     * stream use this method to respect the same memory limit.
+     * 
+     * @param length the length of the token to check
+     * @throws CharStreamLimitException if the given length is greater than
+     *         the maximal capacity of this stream
+     */
+    public void checkLimit(int length) throws CharStreamLimitException {
+        if (length > fMaxCapacity) {
+            throw new CharStreamLimitException(getPointer(), fMaxCapacity);
+        }
     }
 
     /**
      * 
      */
     private void checkPointer() {
-        if (fPointer == null) {
+        if (fPos < 0) {
             incPos();
         }
     }
 
+    /**
+     * Releases the current source of characters. The internal buffer is kept
+     * as is, so the next {@link #reset(CharSequence)} call can re-use it
+     * without new allocations. Arrays given by the caller are not kept. Until
+     * the next reset this stream behaves as an empty stream.
+     */
+    public void clear() {
+        if (fShared) {
+            fBuf = EMPTY_BUFFER;
+        }
+        setDirectContent(0);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -203,84 +607,130 @@ public final class CharStream {
             return false;
         }
         CharStream o = (CharStream) obj;
-        return equals(fLoader, o.fLoader)
-            && equals(fPointer, o.fPointer)
-            && equals(fTop, o.fTop);
+        if (fDirect != o.fDirect || fPos != o.fPos || fTop != o.fTop) {
+            return false;
+        }
+        if (!fDirect) {
+            return equals(fLoader, o.fLoader);
+        }
+        // In the direct mode the buffers contain the whole content
+        if (fBuf != o.fBuf) {
+            for (int i = 0; i < fTop; i++) {
+                if (fBuf[i] != o.fBuf[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies characters from the internal buffer to the given array. The
+     * copied fragment can be wrapped around the end of the buffer so it is
+     * copied in one or two segments.
+     * 
+     * @param pos the position of the first character to copy
+     * @param len the number of characters to copy
+     * @param buf the destination array
+     * @param offset the position of the first character in the destination
+     *        array
+     */
+    private void copy(int pos, int len, char[] buf, int offset) {
+        int start = pos & fMask;
+        int first = Math.min(len, fBuf.length - start);
+        System.arraycopy(fBuf, start, buf, offset, first);
+        if (first < len) {
+            System.arraycopy(fBuf, 0, buf, offset + first, len - first);
+        }
     }
 
     public Pointer getBeginContext() {
         return fBeginContext;
     }
 
+    private char getChar(int pos) {
+        return fEnd >= 0 && pos >= fEnd ? '\0' : fBuf[pos & fMask];
+    }
+
+    /**
+     * @return the current size of the internal buffer
+     */
+    public int getCapacity() {
+        return fBuf.length;
+    }
+
     public char getChar() {
         checkPointer();
-        return (char) (fBuf[fPointer.pos % fBuf.length] & 0xFFFF);
+        return getChar(fPos);
     }
 
-    public Pointer getPointer() {
-        checkPointer();
-        return fPointer;
+    /**
+     * Returns the position of the first character which should be kept in the
+     * buffer. It is the position of the first open marker (or the current
+     * position if there is no markers) minus one; the previous character is
+     * used to count lines.
+     */
+    private int getFirstPosition() {
+        int first = fMarkCounter > 0 ? fFirstMark : fPos;
+        return Math.max(0, first - 1);
     }
 
     /**
-     * @param p
-     * @param newLine
-     * @return
+     * @return the maximal number of characters kept by this stream
      */
-    private Pointer incPointer(Pointer p) {
-        if (p == null) {
-            return Pointer.START;
+    public int getMaxCapacity() {
+        return fMaxCapacity;
+    }
+
+    public Pointer getPointer() {
+        checkPointer();
+        if (fPointer == null) {
+            fPointer = new Pointer(fPos, fLine, fColumn);
         }
-        char ch = fBuf[p.pos % fBuf.length];
-        boolean newLine = false;
-        boolean incLine = false;
-        if (ch == '\r') {
-            newLine = true;
-            incLine = true;
-        } else if (ch == '\n') {
-            newLine = true;
-            char prev = p.pos > 0 ? fBuf[(p.pos - 1) % fBuf.length] : '\0';
-            incLine = prev != '\r';
+        return fPointer;
+    }
+
+    private String getString(int pos, int len) {
+        int start = pos & fMask;
+        if (start + len <= fBuf.length) {
+            return new String(fBuf, start, len);
         }
-        p = p.inc(newLine, incLine);
-        return p;
+        char[] buf = new char[len];
+        copy(pos, len, buf, 0);
+        return new String(buf);
     }
 
     public boolean incPos() {
-        fPointer = incPointer(fPointer);
-        if (fPointer.pos >= fTop.pos - 1) {
-            if (fEnd != null) {
-                fPointer = fEnd;
-                return false;
-            }
-            int val = fLoader.readNext();
-            if (fMarkCounter > 0
-                && fTop.pos - fFirstMark.pos + DELTA >= fBuf.length) {
-                int len = fBuf.length * 3 / 2;
-                char[] buf = new char[len];
-                for (int pos = fFirstMark.pos; pos <= fTop.pos + DELTA; pos++) {
-                    buf[pos % buf.length] = fBuf[pos % fBuf.length];
-                }
-                fBuf = buf;
-            }
-            char ch;
-            if (val >= 0) {
-                ch = (char) (val & 0xFFFF);
+        if (isTerminated()) {
+            return false;
+        }
+        if (!fTrackPositions) {
+            setPosition(fPos + 1, -1, -1);
+        } else if (fPos < 0) {
+            setPosition(0, 0, 0);
+        } else {
+            char ch = getChar(fPos);
+            if (ch == '\r') {
+                setPosition(fPos + 1, fLine + 1, 0);
+            } else if (ch == '\n') {
+                char prev = fPos > 0 ? getChar(fPos - 1) : '\0';
+                setPosition(fPos + 1, prev != '\r' ? fLine + 1 : fLine, 0);
             } else {
-                fEnd = fTop;
-                ch = '\0';
+                setPosition(fPos + 1, fLine, fColumn + 1);
             }
-            fBuf[fTop.pos % fBuf.length] = ch;
-            fTop = incPointer(fTop);
+        }
+        if (fPos >= fTop) {
+            loadBlock();
         }
         if (fMarkCounter == 0) {
-            fFirstMark = fPointer;
+            fFirstMark = fPos;
         }
         return true;
     }
 
     public boolean isBeginContext() {
-        return fBeginContext.equals(getPointer());
+        checkPointer();
+        return fBeginContext.pos == fPos;
     }
 
     public boolean isNewContext() {
@@ -288,7 +738,49 @@ public final class CharStream {
     }
 
     public boolean isTerminated() {
-        return fEnd != null && fEnd.equals(fPointer);
+        return fEnd >= 0 && fPos >= fEnd;
+    }
+
+    /**
+     * Loads the next block of characters from the underlying loader. The
+     * buffer is extended if there is not enough space to load a new block
+     * without overwriting characters which should be kept.
+     * 
+     * @return <code>true</code> if new characters were loaded
+     */
+    private boolean loadBlock() {
+        if (fEnd >= 0) {
+            return false;
+        }
+        int first = getFirstPosition();
+        int size = fTop - first;
+        if (fMarkCounter == 0) {
+            shrinkBuffer();
+        }
+        int maxCapacity = toCapacity(fMaxCapacity);
+        if (fBuf.length - size < MIN_BLOCK_SIZE && fBuf.length < maxCapacity) {
+            int capacity = toCapacity(size + MIN_BLOCK_SIZE);
+            capacity = Math.max(capacity, fBuf.length * 2);
+            resize(first, Math.min(capacity, maxCapacity));
+        }
+        int free = Math.min(fBuf.length, fMaxCapacity) - size;
+        if (free <= 0) {
+            throw new CharStreamLimitException(getPointer(), fMaxCapacity);
+        }
+        int offset = fTop & fMask;
+        int len = Math.min(free, fBuf.length - offset);
+        int count = fBlockLoader.read(fBuf, offset, len);
+        if (count == 0) {
+            throw new IllegalStateException("The loader "
+                + fBlockLoader
+                + " returned no characters");
+        }
+        if (count < 0) {
+            fEnd = fTop;
+            return false;
+        }
+        fTop += count;
+        return true;
     }
 
     public void markBeginContext() {
@@ -298,24 +790,359 @@ public final class CharStream {
     public Marker markPosition() {
         checkPointer();
         if (fMarkCounter == 0) {
-            fFirstMark = fPointer;
+            fFirstMark = fPos;
         }
         fMarkCounter++;
         return new Marker();
     }
 
+    /**
+     * Moves the current position forward by the specified number of already
+     * loaded characters.
+     * 
+     * @param len the number of characters to skip; all these characters
+     *        should be already loaded in the buffer
+     */
+    private void move(int len) {
+        int pos = fPos + len;
+        if (!fTrackPositions) {
+            setPosition(pos, -1, -1);
+        } else {
+            int line = fLine;
+            int column = fColumn;
+            char prev = fPos > 0 ? getChar(fPos - 1) : '\0';
+            for (int i = fPos; i < pos; i++) {
+                char ch = fBuf[i & fMask];
+                if (ch == '\r') {
+                    line++;
+                    column = 0;
+                } else if (ch == '\n') {
+                    if (prev != '\r') {
+                        line++;
+                    }
+                    column = 0;
+                } else {
+                    column++;
+                }
+                prev = ch;
+            }
+            setPosition(pos, line, column);
+        }
+        if (fPos >= fTop) {
+            loadBlock();
+        }
+        if (fMarkCounter == 0) {
+            fFirstMark = fPos;
+        }
+    }
+
+    /**
+     * Reads characters until a character accepted by the given matcher is
+     * found. The found character is not consumed.
+     * 
+     * @param matcher the matcher defining delimiters
+     * @param buf the buffer where all skipped characters are appended
+     * @return the number of read characters
+     */
+    public int readUntil(ICharMatcher matcher, StringBuilder buf) {
+        return scan(matcher, false, '\0', '\0', buf);
+    }
+
+    /**
+     * Reads characters until the specified character is found. The found
+     * character is not consumed.
+     * 
+     * @param ch the character to search
+     * @param buf the buffer where all skipped characters are appended
+     * @return the number of read characters
+     */
+    public int readUntil(char ch, StringBuilder buf) {
+        return scan(null, false, ch, ch, buf);
+    }
+
+    /**
+     * Reads characters until one of the specified characters is found. The
+     * found character is not consumed.
+     * 
+     * @param first the first character to search
+     * @param second the second character to search
+     * @param buf the buffer where all skipped characters are appended
+     * @return the number of read characters
+     */
+    public int readUntil(char first, char second, StringBuilder buf) {
+        return scan(null, false, first, second, buf);
+    }
+
+    /**
+     * Reads all characters accepted by the given matcher.
+     * 
+     * @param matcher the matcher defining characters to read
+     * @param buf the buffer where all read characters are appended
+     * @return the number of read characters
+     */
+    public int readWhile(ICharMatcher matcher, StringBuilder buf) {
+        return scan(matcher, true, '\0', '\0', buf);
+    }
+
+    /**
+     * Re-initializes this stream to read characters from the given loader.
+     * The internal buffer is kept (and reduced to the initial capacity if it
+     * was extended), so the same stream can be used to parse a lot of small
+     * documents without new allocations. All markers opened before this
+     * call become invalid and should not be used anymore.
+     * 
+     * @param loader the new source of characters
+     */
+    public void reset(ICharLoader loader) {
+        if (fShared || fBuf.length > fInitialCapacity) {
+            setBuffer(new char[fInitialCapacity]);
+        } else {
+            setBuffer(fBuf);
+        }
+        fShared = false;
+        fDirect = false;
+        setLoader(loader);
+        setContent(0, -1);
+    }
+
+    /**
+     * Re-initializes this stream to read characters directly from the given
+     * array. The array is not copied and it should not be modified while the
+     * stream is used.
+     * 
+     * @param array the characters to read
+     * @param length the number of characters to read from the array
+     */
+    public void reset(char[] array, int length) {
+        if (length < 0 || length > array.length) {
+            throw new IndexOutOfBoundsException("Bad length: " + length);
+        }
+        fBuf = array;
+        fShared = true;
+        setDirectContent(length);
+    }
+
+    /**
+     * Re-initializes this stream to read the given in-memory characters. The
+     * content is copied to the internal buffer which is re-used if it is big
+     * enough.
+     * 
+     * @param str the characters to read
+     */
+    public void reset(CharSequence str) {
+        int length = str.length();
+        if (fShared || fBuf == null || fBuf.length < length) {
+            fBuf = new char[Math.max(toCapacity(length), fInitialCapacity)];
+        }
+        if (str instanceof String) {
+            ((String) str).getChars(0, length, fBuf, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                fBuf[i] = str.charAt(i);
+            }
+        }
+        fShared = false;
+        setDirectContent(length);
+    }
+
+    /**
+     * Replaces the internal buffer by a new one of the specified size. All
+     * characters starting from the given position are copied in the new
+     * buffer.
+     * 
+     * @param first the position of the first character to keep
+     * @param capacity the size of the new buffer; it should be a power of two
+     */
+    private void resize(int first, int capacity) {
+        char[] buf = new char[capacity];
+        int mask = capacity - 1;
+        int pos = first;
+        while (pos < fTop) {
+            int from = pos & fMask;
+            int to = pos & mask;
+            int len = Math.min(fBuf.length - from, capacity - to);
+            len = Math.min(fTop - pos, len);
+            System.arraycopy(fBuf, from, buf, to, len);
+            pos += len;
+        }
+        setBuffer(buf);
+    }
+
+    /**
+     * This method moves the current position over all characters satisfying
+     * the given conditions. Characters are checked directly in the internal
+     * buffer and they are appended to the given buffer run by run.
+     * 
+     * @param matcher the matcher checking characters; if it is
+     *        <code>null</code> then the scanning stops on the first or on the
+     *        second given characters
+     * @param match the value returned by the matcher for characters which
+     *        should be skipped
+     * @param first the first stop character (used when the matcher is
+     *        <code>null</code>)
+     * @param second the second stop character (used when the matcher is
+     *        <code>null</code>)
+     * @param buf the buffer where skipped characters are appended; it can be
+     *        <code>null</code>
+     * @return the number of skipped characters
+     */
+    private int scan(
+        ICharMatcher matcher,
+        boolean match,
+        char first,
+        char second,
+        StringBuilder buf) {
+        checkPointer();
+        int count = 0;
+        while (!isTerminated()) {
+            if (fPos >= fTop && !loadBlock()) {
+                break;
+            }
+            int start = fPos & fMask;
+            int end = Math.min(start + fTop - fPos, fBuf.length);
+            int i = start;
+            if (matcher != null) {
+                while (i < end && matcher.match(fBuf[i]) == match) {
+                    i++;
+                }
+            } else {
+                while (i < end && fBuf[i] != first && fBuf[i] != second) {
+                    i++;
+                }
+            }
+            int len = i - start;
+            if (len > 0) {
+                if (buf != null) {
+                    buf.append(fBuf, start, len);
+                    checkLimit(buf.length());
+                }
+                move(len);
+                count += len;
+            }
+            if (i < end) {
+                break;
+            }
+        }
+        return count;
+    }
+
     public void setBeginContext(Pointer beginContext) {
         fBeginContext = beginContext;
     }
 
+    private void setBuffer(char[] buf) {
+        fBuf = buf;
+        fMask = buf.length - 1;
+    }
+
+    private void setContent(int top, int end) {
+        fBeginContext = Pointer.START;
+        fTop = top;
+        fEnd = end;
+        fFirstMark = 0;
+        fMarkCounter = 0;
+        setPosition(-1, 0, 0);
+    }
+
+    private void setDirectContent(int length) {
+        fDirect = true;
+        fMask = -1;
+        fLoader = null;
+        fBlockLoader = null;
+        setContent(length, length);
+    }
+
+    private void setLoader(ICharLoader loader) {
+        fLoader = loader;
+        fBlockLoader = loader instanceof ICharBlockLoader
+            ? (ICharBlockLoader) loader
+            : new CharLoaderAdapter(loader);
+    }
+
+    /**
+     * Sets the maximal number of characters which can be kept by this stream.
+     * 
+     * @param maxCapacity the new limit
+     */
+    public void setMaxCapacity(int maxCapacity) {
+        fMaxCapacity = maxCapacity;
+    }
+
+    private void setPosition(int pos, int line, int column) {
+        fPos = pos;
+        fLine = line;
+        fColumn = column;
+        fPointer = null;
+    }
+
+    /**
+     * Reduces the size of the buffer extended by already closed markers.
+     */
+    private void shrinkBuffer() {
+        if (!fDirect && fBuf.length > fInitialCapacity) {
+            int first = getFirstPosition();
+            int capacity = toCapacity(fTop - first + MIN_BLOCK_SIZE);
+            capacity = Math.max(capacity, fInitialCapacity);
+            if (capacity < fBuf.length) {
+                resize(first, capacity);
+            }
+        }
+    }
+
+    /**
+     * Skips characters until a character accepted by the given matcher is
+     * found.
+     * 
+     * @param matcher the matcher defining delimiters
+     * @return the number of skipped characters
+     */
+    public int skipUntil(ICharMatcher matcher) {
+        return scan(matcher, false, '\0', '\0', null);
+    }
+
+    /**
+     * Skips characters until the specified character is found.
+     * 
+     * @param ch the character to search
+     * @return the number of skipped characters
+     */
+    public int skipUntil(char ch) {
+        return scan(null, false, ch, ch, null);
+    }
+
+    /**
+     * Skips characters until one of the specified characters is found.
+     * 
+     * @param first the first character to search
+     * @param second the second character to search
+     * @return the number of skipped characters
+     */
+    public int skipUntil(char first, char second) {
+        return scan(null, false, first, second, null);
+    }
+
+    /**
+     * Skips all characters accepted by the given matcher.
+     * 
+     * @param matcher the matcher defining characters to skip
+     * @return the number of skipped characters
+     */
+    public int skipWhile(ICharMatcher matcher) {
+        return scan(matcher, true, '\0', '\0', null);
+    }
+
     @Override
     public String toString() {
         return "CharStream("
             + fTop
             + ":"
-            + fPointer
-            + "){"
-            + fLoader.toString()
+            + fPos
+            + "["
+            + fLine
+            + ":"
+            + fColumn
+            + "]){"
+            + (fLoader != null ? fLoader.toString() : "direct")
             + "}";
     }
 
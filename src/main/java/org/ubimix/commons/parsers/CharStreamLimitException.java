@@ -0,0 +1,58 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers;
+
+import org.ubimix.commons.parsers.CharStream.Pointer;
+
+/**
+ * This exception is thrown when a {@link CharStream} has to keep more
+ * characters than its maximal capacity allows. It happens when a marker stays
+ * open for too long or when a parser reads a token which is too long (for
+ * example an unterminated quoted string).
+ * 
+ * @author kotelnikov
+ */
+public class CharStreamLimitException extends IllegalStateException {
+
+    private static final long serialVersionUID = 5236071634711536214L;
+
+    private int fLimit;
+
+    private Pointer fPointer;
+
+    public CharStreamLimitException(Pointer pointer, int limit) {
+        super("Buffer limit exceeded (" + limit + " characters) at " + pointer);
+        fPointer = pointer;
+        fLimit = limit;
+    }
+
+    /**
+     * @return the maximal number of characters which can be kept by the
+     *         stream
+     */
+    public int getLimit() {
+        return fLimit;
+    }
+
+    /**
+     * @return the position in the stream where the limit was exceeded
+     */
+    public Pointer getPointer() {
+        return fPointer;
+    }
+
+}
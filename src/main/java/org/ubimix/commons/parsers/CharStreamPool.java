@@ -0,0 +1,103 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers;
+
+/**
+ * This class keeps a free {@link CharStream} instance and re-initializes it
+ * for each new string to parse. It is used by string-based entry points of
+ * parsers to avoid allocation of a new stream and a new buffer for each call.
+ * Instances of this class are not thread-safe; they should be confined to the
+ * thread using the owning parser. So they are used only by parsers which
+ * already keep a per-call state (like the JSON parser); stateless parsers
+ * which can be shared between threads create a new stream for each call. Re-entrant calls are allowed: if the cached
+ * stream is already in use then a new stream is created. Released streams
+ * keep their buffers; a stream is dropped only if its buffer grew over the
+ * maximal retained capacity, so one huge document does not pin a huge
+ * buffer.
+ * 
+ * @author kotelnikov
+ */
+public class CharStreamPool {
+
+    /**
+     * The default maximal size of buffers kept by released streams.
+     */
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private final int fMaxRetainedCapacity;
+
+    private CharStream fStream;
+
+    private final boolean fTrackPositions;
+
+    /**
+     * Creates a pool of streams which do not track lines and columns.
+     */
+    public CharStreamPool() {
+        this(false);
+    }
+
+    /**
+     * @param trackPositions this flag is passed to all streams created by this
+     *        pool
+     */
+    public CharStreamPool(boolean trackPositions) {
+        this(trackPositions, DEFAULT_MAX_RETAINED_CAPACITY);
+    }
+
+    /**
+     * @param trackPositions this flag is passed to all streams created by this
+     *        pool
+     * @param maxRetainedCapacity the maximal size of the buffer of a released
+     *        stream; streams with bigger buffers are not kept by this pool
+     */
+    public CharStreamPool(boolean trackPositions, int maxRetainedCapacity) {
+        fTrackPositions = trackPositions;
+        fMaxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * Returns a stream reading the specified string. The returned stream
+     * should be given back using the {@link #release(CharStream)} method.
+     * 
+     * @param str the string to read
+     * @return a stream reading the specified string
+     */
+    public CharStream newStream(String str) {
+        CharStream stream = fStream;
+        if (stream != null) {
+            fStream = null;
+            stream.reset(str);
+        } else {
+            stream = new CharStream(str, fTrackPositions);
+        }
+        return stream;
+    }
+
+    /**
+     * Gives back a stream returned by the {@link #newStream(String)} method.
+     * 
+     * @param stream the stream to release
+     */
+    public void release(CharStream stream) {
+        stream.clear();
+        if (stream.getCapacity() <= fMaxRetainedCapacity) {
+            fStream = stream;
+        }
+    }
+
+}
@@ -1,19 +1,16 @@
 package org.ubimix.commons.parsers;
 
-import org.ubimix.commons.parsers.CharStream.ICharLoader;
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
 
-public class SimpleCharLoader implements ICharLoader {
+public class SimpleCharLoader implements ICharBlockLoader {
 
-    private char[] fArray;
-
-    private int fArrayPos;
+    private int fPos;
 
     private String fString;
 
     public SimpleCharLoader(String str) {
         fString = str;
-        fArray = fString.toCharArray();
-        fArrayPos = 0;
+        fPos = 0;
     }
 
     @Override
@@ -33,11 +30,25 @@ public class SimpleCharLoader implements ICharLoader {
         return fString.hashCode();
     }
 
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharBlockLoader#read(char[],
+     *      int, int)
+     */
+    public int read(char[] buf, int offset, int len) {
+        int count = Math.min(len, fString.length() - fPos);
+        if (count <= 0) {
+            return len == 0 ? 0 : -1;
+        }
+        fString.getChars(fPos, fPos + count, buf, offset);
+        fPos += count;
+        return count;
+    }
+
     /**
      * @see org.statewalker.tokenizer.CharStream.ICharLoader#readNext()
      */
     public int readNext() {
-        return fArrayPos < fArray.length ? fArray[fArrayPos++] : -1;
+        return fPos < fString.length() ? fString.charAt(fPos++) : -1;
     }
 
     @Override
@@ -0,0 +1,171 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+
+/**
+ * This loader decodes characters from a byte channel or from an input stream.
+ * Bytes are read in a buffer of a fixed size and they are decoded with the
+ * same {@link CharsetDecoder} in a fixed-size character buffer. So the memory
+ * used by this loader does not depend on the size of the input. Malformed and
+ * unmappable byte sequences are replaced by the default replacement character
+ * of the decoder.
+ * <p>
+ * This loader is supposed to be used with blocking channels.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ChannelCharLoader implements ICharBlockLoader, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 8;
+
+    private ByteBuffer fBytes;
+
+    private ReadableByteChannel fChannel;
+
+    private CharBuffer fChars;
+
+    private CharsetDecoder fDecoder;
+
+    /**
+     * This flag is <code>true</code> when all bytes were read from the
+     * channel.
+     */
+    private boolean fEndOfInput;
+
+    /**
+     * This flag is <code>true</code> when all bytes were decoded and the
+     * decoder was flushed.
+     */
+    private boolean fFlushed;
+
+    public ChannelCharLoader(InputStream input, Charset charset) {
+        this(Channels.newChannel(input), charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelCharLoader(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelCharLoader(
+        ReadableByteChannel channel,
+        Charset charset,
+        int bufferSize) {
+        fChannel = channel;
+        fDecoder = charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bufferSize = Math.max(bufferSize, 16);
+        fBytes = ByteBuffer.allocate(bufferSize);
+        fBytes.flip();
+        fChars = CharBuffer.allocate(bufferSize);
+        fChars.flip();
+    }
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        fChannel.close();
+    }
+
+    /**
+     * Decodes the next portion of characters in the internal buffer.
+     * 
+     * @return <code>true</code> if new characters are available
+     */
+    private boolean decode() throws IOException {
+        fChars.clear();
+        while (!fFlushed) {
+            CoderResult result = fDecoder.decode(fBytes, fChars, fEndOfInput);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (fEndOfInput) {
+                result = fDecoder.flush(fChars);
+                if (result.isOverflow()) {
+                    break;
+                }
+                fFlushed = true;
+            } else if (fChars.position() > 0) {
+                break;
+            } else {
+                fBytes.compact();
+                int count = fChannel.read(fBytes);
+                fBytes.flip();
+                fEndOfInput = count < 0;
+            }
+        }
+        fChars.flip();
+        return fChars.hasRemaining();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharBlockLoader#read(char[],
+     *      int, int)
+     */
+    public int read(char[] buf, int offset, int len) {
+        if (!fChars.hasRemaining() && !readChars()) {
+            return -1;
+        }
+        len = Math.min(len, fChars.remaining());
+        fChars.get(buf, offset, len);
+        return len;
+    }
+
+    private boolean readChars() {
+        try {
+            return decode();
+        } catch (IOException e) {
+            throw new CharLoaderException(e);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharLoader#readNext()
+     */
+    public int readNext() {
+        if (!fChars.hasRemaining() && !readChars()) {
+            return -1;
+        }
+        return fChars.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelCharLoader(" + fDecoder.charset() + ")";
+    }
+
+}
@@ -0,0 +1,158 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.ubimix.commons.parsers.json.JSONPushParser;
+
+/**
+ * This class decodes fragments of bytes and gives the resulting characters
+ * to a {@link JSONPushParser}. Byte sequences split between fragments are
+ * kept until the next fragment arrives, so fragments can be cut at arbitrary
+ * positions. Malformed sequences are replaced by the <code>U+FFFD</code>
+ * character. This class can be used to parse request bodies arriving in
+ * several network buffers without blocking.
+ * 
+ * @author kotelnikov
+ */
+public class JSONPushDecoder {
+
+    /**
+     * The maximal number of bytes of one incomplete character.
+     */
+    private static final int MAX_SEQUENCE_LENGTH = 16;
+
+    private final CharBuffer fChars;
+
+    private final CharsetDecoder fDecoder;
+
+    private final JSONPushParser fParser;
+
+    /**
+     * Bytes of an incomplete character from the end of the previous
+     * fragment.
+     */
+    private final ByteBuffer fTail = ByteBuffer.allocate(MAX_SEQUENCE_LENGTH);
+
+    /**
+     * @param parser the parser receiving decoded characters
+     * @param charset the charset of the input
+     */
+    public JSONPushDecoder(JSONPushParser parser, Charset charset) {
+        this(parser, charset, 1024);
+    }
+
+    /**
+     * @param parser the parser receiving decoded characters
+     * @param charset the charset of the input
+     * @param bufferSize the size of the buffer for decoded characters
+     */
+    public JSONPushDecoder(
+        JSONPushParser parser,
+        Charset charset,
+        int bufferSize) {
+        fParser = parser;
+        fDecoder = charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        fChars = CharBuffer.allocate(Math.max(bufferSize, 2));
+    }
+
+    /**
+     * Decodes all bytes of the given buffer and gives the resulting
+     * characters to the parser.
+     * 
+     * @param bytes the buffer to decode
+     * @param endOfInput this flag is <code>true</code> if there are no more
+     *        bytes after the given buffer
+     */
+    private void decode(ByteBuffer bytes, boolean endOfInput) {
+        while (true) {
+            CoderResult result = fDecoder.decode(bytes, fChars, endOfInput);
+            flushChars();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Notifies that all fragments of the input were given to this decoder.
+     * The parser is notified about the end of the input as well. After this
+     * call the decoder can be used to decode a new input.
+     */
+    public void endOfInput() {
+        fTail.flip();
+        decode(fTail, true);
+        while (fDecoder.flush(fChars).isOverflow()) {
+            flushChars();
+        }
+        flushChars();
+        fTail.clear();
+        fDecoder.reset();
+        fParser.endOfInput();
+    }
+
+    /**
+     * Decodes the given fragment and gives the resulting characters to the
+     * parser. All bytes of the given buffer are consumed.
+     * 
+     * @param bytes the next fragment of the input
+     */
+    public void feed(ByteBuffer bytes) {
+        // Completes the character split between fragments
+        while (fTail.position() > 0 && bytes.hasRemaining()) {
+            fTail.put(bytes.get());
+            fTail.flip();
+            decode(fTail, false);
+            fTail.compact();
+            if (fTail.position() > 0 && !fTail.hasRemaining()) {
+                // A malformed sequence which is too long
+                fTail.flip();
+                decode(fTail, true);
+                fTail.clear();
+                fDecoder.reset();
+            }
+        }
+        decode(bytes, false);
+        fTail.put(bytes);
+    }
+
+    private void flushChars() {
+        if (fChars.position() > 0) {
+            fParser.feed(fChars.array(), 0, fChars.position());
+            fChars.clear();
+        }
+    }
+
+    /**
+     * Returns the parser receiving decoded characters.
+     * 
+     * @return the parser receiving decoded characters
+     */
+    public JSONPushParser getParser() {
+        return fParser;
+    }
+
+}
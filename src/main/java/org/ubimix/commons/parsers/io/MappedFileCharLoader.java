@@ -0,0 +1,246 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+
+/**
+ * This loader reads characters from a memory-mapped file. The file is mapped
+ * window by window and bytes are decoded directly from the mapped buffer
+ * without copying them in the heap. When the current window is consumed the
+ * next one is mapped starting from the current position. Only UTF-8 and
+ * ISO-8859-1 (Latin-1) encodings are supported. UTF-8 bytes are decoded by
+ * the decoder of the JDK, so malformed sequences are replaced by the
+ * <code>U+FFFD</code> character as in all other loaders.
+ * 
+ * @author kotelnikov
+ */
+public class MappedFileCharLoader implements ICharBlockLoader, Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 1024 * 1024 * 16;
+
+    /**
+     * The maximal length of one UTF-8 sequence. A new window is mapped when
+     * the current one contains less bytes than this value.
+     */
+    private static final int MAX_SEQUENCE_LENGTH = 4;
+
+    /**
+     * Checks that the given charset is supported by this loader.
+     * 
+     * @param charset the charset to check
+     * @return <code>true</code> for UTF-8 and <code>false</code> for Latin-1
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    private static boolean checkCharset(Charset charset) {
+        String name = charset.name();
+        if ("UTF-8".equals(name)) {
+            return true;
+        }
+        if (!"ISO-8859-1".equals(name)) {
+            throw new IllegalArgumentException("Unsupported charset: "
+                + name
+                + ". Only UTF-8 and ISO-8859-1 are supported.");
+        }
+        return false;
+    }
+
+    /**
+     * Opens the channel of the given file. The charset is checked before
+     * opening the file, so the file is not left open if it is rejected.
+     */
+    private static FileChannel openChannel(File file, Charset charset)
+        throws IOException {
+        checkCharset(charset);
+        return new FileInputStream(file).getChannel();
+    }
+
+    private char[] fChar = new char[1];
+
+    private FileChannel fChannel;
+
+    /**
+     * The decoder of UTF-8 bytes or <code>null</code> for Latin-1.
+     */
+    private CharsetDecoder fDecoder;
+
+    /**
+     * This buffer receives surrogate pairs which do not fit in the space
+     * given by the caller.
+     */
+    private final CharBuffer fPair = CharBuffer.allocate(2);
+
+    /**
+     * The second character of a surrogate pair which could not be returned by
+     * the previous call or <code>-1</code>.
+     */
+    private int fPendingChar = -1;
+
+    private long fSize;
+
+    /**
+     * This flag is <code>true</code> if bytes are decoded as UTF-8 and
+     * <code>false</code> for Latin-1.
+     */
+    private boolean fUTF8;
+
+    private MappedByteBuffer fWindow;
+
+    private int fWindowSize;
+
+    private long fWindowStart;
+
+    public MappedFileCharLoader(File file, Charset charset) throws IOException {
+        this(openChannel(file, charset), charset, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileCharLoader(
+        FileChannel channel,
+        Charset charset,
+        int windowSize) throws IOException {
+        fUTF8 = checkCharset(charset);
+        if (fUTF8) {
+            fDecoder = charset
+                .newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        fChannel = channel;
+        fWindowSize = Math.max(windowSize, MAX_SEQUENCE_LENGTH * 2);
+        boolean ok = false;
+        try {
+            fSize = fChannel.size();
+            map(fChannel.position());
+            ok = true;
+        } finally {
+            // The loader owns the channel, so it is closed if the loader
+            // can not be created
+            if (!ok) {
+                fChannel.close();
+            }
+        }
+    }
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        fChannel.close();
+    }
+
+    private int decodeLatin1(char[] buf, int offset, int len) {
+        MappedByteBuffer window = fWindow;
+        int pos = window.position();
+        len = Math.min(len, window.limit() - pos);
+        for (int i = 0; i < len; i++) {
+            buf[offset + i] = (char) (window.get(pos + i) & 0xFF);
+        }
+        window.position(pos + len);
+        return len;
+    }
+
+    private int decodeUTF8(char[] buf, int offset, int len) {
+        CharBuffer out = CharBuffer.wrap(buf, offset, len);
+        // Incomplete sequences at the end of a window are kept in the window
+        // and decoded after mapping of the next one
+        boolean last = isLastWindow();
+        CoderResult result = fDecoder.decode(fWindow, out, last);
+        if (out.position() == offset && result.isOverflow()) {
+            // A surrogate pair does not fit in the given space
+            fPair.clear();
+            fDecoder.decode(fWindow, fPair, last);
+            buf[offset] = fPair.get(0);
+            if (fPair.position() > 1) {
+                fPendingChar = fPair.get(1);
+            }
+            return 1;
+        }
+        return out.position() - offset;
+    }
+
+    private boolean isLastWindow() {
+        return fWindowStart + fWindow.limit() >= fSize;
+    }
+
+    /**
+     * Maps a new window of the file starting from the specified position.
+     * 
+     * @param start the position of the first byte of the new window
+     */
+    private void map(long start) throws IOException {
+        long size = Math.min(fWindowSize, fSize - start);
+        fWindow = fChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        fWindowStart = start;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharBlockLoader#read(char[],
+     *      int, int)
+     */
+    public int read(char[] buf, int offset, int len) {
+        if (len <= 0) {
+            return 0;
+        }
+        if (fPendingChar >= 0) {
+            buf[offset] = (char) fPendingChar;
+            fPendingChar = -1;
+            return 1;
+        }
+        try {
+            if (fWindow.remaining() < MAX_SEQUENCE_LENGTH && !isLastWindow()) {
+                map(fWindowStart + fWindow.position());
+            }
+        } catch (IOException e) {
+            throw new CharLoaderException(e);
+        }
+        if (!fWindow.hasRemaining()) {
+            return -1;
+        }
+        return fUTF8
+            ? decodeUTF8(buf, offset, len)
+            : decodeLatin1(buf, offset, len);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharLoader#readNext()
+     */
+    public int readNext() {
+        return read(fChar, 0, 1) > 0 ? fChar[0] : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFileCharLoader("
+            + (fWindowStart + fWindow.position())
+            + "/"
+            + fSize
+            + ")";
+    }
+
+}
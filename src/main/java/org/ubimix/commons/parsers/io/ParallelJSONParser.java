@@ -0,0 +1,459 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.io;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+import org.ubimix.commons.parsers.CharStream.Pointer;
+import org.ubimix.commons.parsers.CharStreamLimitException;
+import org.ubimix.commons.parsers.json.IJSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONSymbolTable;
+
+/**
+ * This class parses newline-delimited JSON (NDJSON) in parallel. The input is
+ * split in chunks at record boundaries (new lines) and each chunk is parsed
+ * by a task submitted to the given executor (for example a fork-join pool).
+ * Each task uses its own {@link JSONParser} instance, so no state is left in
+ * threads of the executor; all parsers can share the same symbol table.
+ * <p>
+ * Results of chunks are given to the {@link IChunkHandler} in the calling
+ * thread either in the original order of chunks or in the order of their
+ * completion. The number of chunks read but not yet delivered is limited, so
+ * the used memory is bounded by the number of in-flight chunks multiplied by
+ * the chunk size. Chunk buffers are re-used after delivery of their results.
+ * A chunk is extended when one record does not fit in it, but records longer
+ * than the maximal record size are rejected with a
+ * {@link CharStreamLimitException}, so one huge or unterminated record can
+ * not exhaust the memory.
+ * </p>
+ * <p>
+ * Positions reported by {@link org.ubimix.commons.parsers.json.JSONParseException}s
+ * are relative to the beginning of the chunk where the error was detected.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class ParallelJSONParser {
+
+    /**
+     * A character buffer containing whole records.
+     */
+    private static class Chunk {
+
+        private char[] fBuf;
+
+        private int fIndex;
+
+        private int fLen;
+
+        public Chunk(int size) {
+            fBuf = new char[size];
+        }
+
+    }
+
+    /**
+     * Handlers of this type create listeners for chunks and receive results
+     * of parsed chunks.
+     * 
+     * @param <T> the type of chunk results
+     */
+    public interface IChunkHandler<T> {
+
+        /**
+         * Returns a new listener for one chunk. This method is called in
+         * worker threads, so it should be thread-safe.
+         * 
+         * @return a new listener used to parse one chunk
+         */
+        IChunkListener<T> newListener();
+
+        /**
+         * Notifies about the result of a parsed chunk. This method is called
+         * in the thread calling the
+         * {@link ParallelJSONParser#parse(ICharBlockLoader, IChunkHandler)}
+         * method.
+         * 
+         * @param index the index of the chunk in the input
+         * @param result the result returned by the chunk listener
+         */
+        void onResult(int index, T result);
+
+    }
+
+    /**
+     * Listeners of this type are notified about all records of one chunk and
+     * they build the result of this chunk. Listeners implementing the
+     * {@link org.ubimix.commons.parsers.json.IJSONDocumentListener} interface
+     * are notified about each record.
+     * 
+     * @param <T> the type of the result
+     */
+    public interface IChunkListener<T> extends IJSONListener {
+
+        /**
+         * @return the result built from all records of the chunk
+         */
+        T getResult();
+
+    }
+
+    /**
+     * The result of a chunk with the chunk itself, so its buffer can be
+     * re-used when the result is delivered.
+     */
+    private static class Result<T> {
+
+        private Chunk fChunk;
+
+        private T fResult;
+
+        public Result(Chunk chunk, T result) {
+            fChunk = chunk;
+            fResult = result;
+        }
+
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 64;
+
+    /**
+     * The default maximal length of one record in characters.
+     */
+    public static final int DEFAULT_MAX_RECORD_SIZE = 1 << 24;
+
+    private final int fChunkSize;
+
+    private final ExecutorService fExecutor;
+
+    /**
+     * Chunks which are not used by any tasks; this list is accessed only by
+     * the calling thread.
+     */
+    private final List<Chunk> fFreeChunks = new ArrayList<Chunk>();
+
+    private final int fMaxChunks;
+
+    private final int fMaxRecordSize;
+
+    private final boolean fOrdered;
+
+    private final boolean fStrict;
+
+    private final JSONSymbolTable fSymbolTable;
+
+    /**
+     * @param executor the executor used to parse chunks
+     * @param ordered if this flag is <code>true</code> then results are
+     *        delivered in the order of chunks in the input; otherwise they
+     *        are delivered as soon as they are ready
+     */
+    public ParallelJSONParser(ExecutorService executor, boolean ordered) {
+        this(executor, ordered, DEFAULT_CHUNK_SIZE, Runtime
+            .getRuntime()
+            .availableProcessors() * 2, false, null);
+    }
+
+    /**
+     * @param executor the executor used to parse chunks
+     * @param ordered if this flag is <code>true</code> then results are
+     *        delivered in the order of chunks in the input; otherwise they
+     *        are delivered as soon as they are ready
+     * @param chunkSize the initial size of chunks in characters; a chunk is
+     *        extended if one record does not fit in it
+     * @param maxChunks the maximal number of chunks read from the input but
+     *        not yet delivered to the handler
+     * @param strict if this flag is <code>true</code> then records are
+     *        parsed in the strict mode
+     * @param symbolTable the symbol table shared by all parsers; it can be
+     *        <code>null</code>
+     */
+    public ParallelJSONParser(
+        ExecutorService executor,
+        boolean ordered,
+        int chunkSize,
+        int maxChunks,
+        boolean strict,
+        JSONSymbolTable symbolTable) {
+        this(
+            executor,
+            ordered,
+            chunkSize,
+            maxChunks,
+            Math.max(chunkSize, DEFAULT_MAX_RECORD_SIZE),
+            strict,
+            symbolTable);
+    }
+
+    /**
+     * @param executor the executor used to parse chunks
+     * @param ordered if this flag is <code>true</code> then results are
+     *        delivered in the order of chunks in the input; otherwise they
+     *        are delivered as soon as they are ready
+     * @param chunkSize the initial size of chunks in characters; a chunk is
+     *        extended if one record does not fit in it
+     * @param maxChunks the maximal number of chunks read from the input but
+     *        not yet delivered to the handler
+     * @param maxRecordSize the maximal length of one record in characters
+     * @param strict if this flag is <code>true</code> then records are
+     *        parsed in the strict mode
+     * @param symbolTable the symbol table shared by all parsers; it can be
+     *        <code>null</code>
+     */
+    public ParallelJSONParser(
+        ExecutorService executor,
+        boolean ordered,
+        int chunkSize,
+        int maxChunks,
+        int maxRecordSize,
+        boolean strict,
+        JSONSymbolTable symbolTable) {
+        if (chunkSize <= 0 || maxChunks <= 0) {
+            throw new IllegalArgumentException(
+                "Chunk size and the number of chunks should be positive values");
+        }
+        if (maxRecordSize <= 0 || maxRecordSize == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad maximal record size: "
+                + maxRecordSize);
+        }
+        fExecutor = executor;
+        fOrdered = ordered;
+        fChunkSize = chunkSize;
+        fMaxChunks = maxChunks;
+        fMaxRecordSize = maxRecordSize;
+        fStrict = strict;
+        fSymbolTable = symbolTable;
+    }
+
+    /**
+     * Delivers the result of a finished task and releases its chunk.
+     */
+    private <T> void deliver(Future<Result<T>> future, IChunkHandler<T> handler)
+        throws InterruptedException {
+        Result<T> result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        handler.onResult(result.fChunk.fIndex, result.fResult);
+        releaseChunk(result.fChunk);
+    }
+
+    /**
+     * @return a free chunk
+     */
+    private Chunk newChunk() {
+        int size = fFreeChunks.size();
+        return size > 0 ? fFreeChunks.remove(size - 1) : new Chunk(fChunkSize);
+    }
+
+    private <T> Callable<Result<T>> newTask(
+        final Chunk chunk,
+        final IChunkHandler<T> handler) {
+        return new Callable<Result<T>>() {
+            public Result<T> call() throws Exception {
+                IChunkListener<T> listener = handler.newListener();
+                CharStream stream = new CharStream(
+                    chunk.fBuf,
+                    chunk.fLen,
+                    false);
+                JSONParser parser = new JSONParser(fSymbolTable, fStrict);
+                parser.parseStream(stream, listener);
+                return new Result<T>(chunk, listener.getResult());
+            }
+        };
+    }
+
+    /**
+     * Parses all records from the given loader and gives results of chunks
+     * to the handler. This method returns when all results are delivered. If
+     * a task fails then all other tasks are cancelled and the error is
+     * re-thrown in the calling thread.
+     * 
+     * @param loader the loader providing the input
+     * @param handler the handler creating chunk listeners and receiving
+     *        results
+     * @return the number of parsed chunks
+     * @throws InterruptedException if the calling thread was interrupted
+     *         while waiting for results
+     * @throws CharStreamLimitException if a record is longer than the
+     *         maximal record size
+     */
+    public <T> int parse(ICharBlockLoader loader, IChunkHandler<T> handler)
+        throws InterruptedException {
+        LinkedList<Future<Result<T>>> futures =
+            new LinkedList<Future<Result<T>>>();
+        CompletionService<Result<T>> completionService = fOrdered
+            ? null
+            : new ExecutorCompletionService<Result<T>>(fExecutor);
+        int count = 0;
+        int offset = 0;
+        boolean ok = false;
+        try {
+            Chunk chunk = newChunk();
+            chunk.fLen = 0;
+            while (true) {
+                Chunk next = newChunk();
+                boolean end = readChunk(loader, offset, chunk, next);
+                offset += chunk.fLen;
+                if (chunk.fLen > 0) {
+                    if (futures.size() == fMaxChunks) {
+                        Future<Result<T>> future = fOrdered
+                            ? futures.getFirst()
+                            : completionService.take();
+                        futures.remove(future);
+                        deliver(future, handler);
+                    }
+                    chunk.fIndex = count++;
+                    Callable<Result<T>> task = newTask(chunk, handler);
+                    futures.add(fOrdered
+                        ? fExecutor.submit(task)
+                        : completionService.submit(task));
+                } else {
+                    releaseChunk(chunk);
+                }
+                chunk = next;
+                if (end) {
+                    releaseChunk(chunk);
+                    break;
+                }
+            }
+            while (!futures.isEmpty()) {
+                Future<Result<T>> future = fOrdered
+                    ? futures.getFirst()
+                    : completionService.take();
+                futures.remove(future);
+                deliver(future, handler);
+            }
+            ok = true;
+        } finally {
+            if (!ok) {
+                for (Future<Result<T>> future : futures) {
+                    future.cancel(true);
+                }
+                fFreeChunks.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fills the given chunk with characters from the loader. The chunk
+     * already can contain characters (the tail of the previous chunk). All
+     * characters after the last new line are moved to the next chunk.
+     * 
+     * @param loader the loader providing characters
+     * @param offset the position of the chunk in the input
+     * @param chunk the chunk to fill
+     * @param next the next chunk receiving the incomplete last record
+     * @return <code>true</code> if the end of the input is reached
+     * @throws CharStreamLimitException if the first record of the chunk is
+     *         longer than the maximal record size
+     */
+    private boolean readChunk(
+        ICharBlockLoader loader,
+        int offset,
+        Chunk chunk,
+        Chunk next) throws CharStreamLimitException {
+        boolean end = false;
+        int split = -1;
+        int pos = 0;
+        while (true) {
+            while (chunk.fLen < chunk.fBuf.length) {
+                int len = loader.read(
+                    chunk.fBuf,
+                    chunk.fLen,
+                    chunk.fBuf.length - chunk.fLen);
+                if (len < 0) {
+                    end = true;
+                    break;
+                }
+                chunk.fLen += len;
+            }
+            if (end) {
+                break;
+            }
+            for (int i = chunk.fLen - 1; i >= pos; i--) {
+                if (chunk.fBuf[i] == '\n') {
+                    split = i + 1;
+                    break;
+                }
+            }
+            if (split > 0) {
+                break;
+            }
+            // One record does not fit in the chunk
+            if (chunk.fLen > fMaxRecordSize) {
+                throw new CharStreamLimitException(new Pointer(
+                    offset + chunk.fLen,
+                    -1,
+                    -1), fMaxRecordSize);
+            }
+            pos = chunk.fLen;
+            int size = (int) Math.min(
+                chunk.fBuf.length * 2L,
+                fMaxRecordSize + 1L);
+            char[] buf = new char[size];
+            System.arraycopy(chunk.fBuf, 0, buf, 0, chunk.fLen);
+            chunk.fBuf = buf;
+        }
+        next.fLen = 0;
+        if (!end) {
+            int tail = chunk.fLen - split;
+            if (next.fBuf.length < tail) {
+                next.fBuf = new char[chunk.fBuf.length];
+            }
+            System.arraycopy(chunk.fBuf, split, next.fBuf, 0, tail);
+            next.fLen = tail;
+            chunk.fLen = split;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the given chunk to the list of free chunks. Chunks grown to
+     * hold long records are dropped, so the memory they take is not kept
+     * after these records are parsed.
+     * 
+     * @param chunk the chunk to release
+     */
+    private void releaseChunk(Chunk chunk) {
+        if (chunk.fBuf.length <= fChunkSize) {
+            fFreeChunks.add(chunk);
+        }
+    }
+
+}
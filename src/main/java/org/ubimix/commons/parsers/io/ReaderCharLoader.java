@@ -0,0 +1,73 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+
+/**
+ * This loader reads characters from a {@link Reader}.
+ * 
+ * @author kotelnikov
+ */
+public class ReaderCharLoader implements ICharBlockLoader, Closeable {
+
+    private Reader fReader;
+
+    public ReaderCharLoader(Reader reader) {
+        fReader = reader;
+    }
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        fReader.close();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharBlockLoader#read(char[],
+     *      int, int)
+     */
+    public int read(char[] buf, int offset, int len) {
+        try {
+            return fReader.read(buf, offset, len);
+        } catch (IOException e) {
+            throw new CharLoaderException(e);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.CharStream.ICharLoader#readNext()
+     */
+    public int readNext() {
+        try {
+            return fReader.read();
+        } catch (IOException e) {
+            throw new CharLoaderException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReaderCharLoader(" + fReader + ")";
+    }
+
+}
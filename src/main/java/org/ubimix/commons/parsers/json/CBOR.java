@@ -0,0 +1,74 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This class contains constants of the Concise Binary Object Representation
+ * (CBOR, RFC 8949) used by the {@link CBORWriter} and the {@link CBORParser}.
+ * <p>
+ * Each data item starts with an initial byte containing the major type of
+ * the item in the three high-order bits and additional information in the
+ * five low-order bits. Values less than 24 are stored directly in the
+ * additional information; bigger values follow the initial byte as 1, 2, 4
+ * or 8 bytes in the network byte order. Objects and arrays are written with
+ * the indefinite length ({@link #INDEFINITE}) and closed by the
+ * {@link #BREAK} byte, so they can be streamed without knowing the number of
+ * their properties or elements in advance.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+class CBOR {
+
+    static final int BREAK = 0xFF;
+
+    static final int FALSE = 0xF4;
+
+    static final int FLOAT16 = 0xF9;
+
+    static final int FLOAT32 = 0xFA;
+
+    static final int FLOAT64 = 0xFB;
+
+    /**
+     * The additional information of items with the indefinite length.
+     */
+    static final int INDEFINITE = 31;
+
+    static final int MAJOR_ARRAY = 4;
+
+    static final int MAJOR_BYTES = 2;
+
+    static final int MAJOR_MAP = 5;
+
+    static final int MAJOR_NEGATIVE = 1;
+
+    static final int MAJOR_SIMPLE = 7;
+
+    static final int MAJOR_TAG = 6;
+
+    static final int MAJOR_TEXT = 3;
+
+    static final int MAJOR_UNSIGNED = 0;
+
+    static final int NULL = 0xF6;
+
+    static final int TRUE = 0xF5;
+
+    static final int UNDEFINED = 0xF7;
+
+}
@@ -0,0 +1,585 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.math.BigInteger;
+
+/**
+ * This parser reads data items in the CBOR format (RFC 8949) and notifies
+ * listeners about them using the same events as the {@link JSONParser}, so
+ * any existing {@link IJSONListener} can consume binary data. Listeners
+ * implementing the {@link IJSONValueListener} interface receive native typed
+ * values and strings as re-used character sequences; other listeners receive
+ * all values as strings, exactly as the {@link JSONParser} gives them.
+ * <p>
+ * Both definite and indefinite lengths are accepted for all items. Items
+ * without a direct JSON equivalent are converted as recommended by the
+ * section 6.1 of the specification: byte strings are given as base64url
+ * encoded strings, tags are ignored, the <code>undefined</code> value is
+ * reported as a missing value (<code>onValue(null)</code>), integer map keys
+ * are given as their decimal
+ * representations. Integers out of the range of the <code>long</code> type
+ * (including bignums with the tags 2 and 3) are given to typed listeners by
+ * their decimal text using the {@link IJSONValueListener#onNumber(CharSequence)}
+ * method, so they do not lose precision. Arrays, maps and tags can not be
+ * nested deeper than {@link #MAX_DEPTH} levels.
+ * </p>
+ * <p>
+ * Instances of this class can be re-used to parse multiple items but they
+ * are not thread-safe.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class CBORParser {
+
+    /**
+     * The maximal nesting depth of arrays, maps and tags.
+     */
+    public static final int MAX_DEPTH = 1000;
+
+    private static final char[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+        .toCharArray();
+
+    /**
+     * Returns the value of the specified half precision float.
+     */
+    private static double toDouble(int half) {
+        int exp = (half >> 10) & 0x1F;
+        int mant = half & 0x3FF;
+        double value;
+        if (exp == 0) {
+            value = mant * Math.pow(2, -24);
+        } else if (exp != 31) {
+            value = (mant + 1024) * Math.pow(2, exp - 25);
+        } else {
+            value = mant == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    /**
+     * Returns the given unsigned 64-bit value as a big integer.
+     */
+    private static BigInteger toUnsignedBigInteger(long value) {
+        return BigInteger
+            .valueOf(value >>> 1)
+            .shiftLeft(1)
+            .or(BigInteger.valueOf(value & 1));
+    }
+
+    private byte[] fBuf;
+
+    /**
+     * This buffer accumulates content of byte strings with the indefinite
+     * length.
+     */
+    private byte[] fBytes = new byte[64];
+
+    /**
+     * This buffer contains characters of the current string.
+     */
+    private char[] fChars = new char[64];
+
+    private int fCharsLen;
+
+    /**
+     * The number of items which are currently being read
+     */
+    private int fDepth;
+
+    private int fEnd;
+
+    private int fPos;
+
+    private final JSONSymbolTable fSymbolTable;
+
+    /**
+     * This object gives access to the content of the character buffer
+     * without copying it.
+     */
+    private final CharSequence fView = new CharSequence() {
+
+        public char charAt(int index) {
+            return fChars[index];
+        }
+
+        public int length() {
+            return fCharsLen;
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new String(fChars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(fChars, 0, fCharsLen);
+        }
+
+    };
+
+    public CBORParser() {
+        this(null);
+    }
+
+    /**
+     * @param symbolTable the table used to intern property names; it can be
+     *        <code>null</code>
+     */
+    public CBORParser(JSONSymbolTable symbolTable) {
+        fSymbolTable = symbolTable;
+    }
+
+    /**
+     * Appends base64url encoded bytes to the character buffer.
+     */
+    private void appendBase64(byte[] bytes, int offset, int len) {
+        ensureChars(fCharsLen + (len + 2) / 3 * 4);
+        char[] chars = fChars;
+        int pos = fCharsLen;
+        int end = offset + len;
+        for (int i = offset; i < end; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16;
+            if (i + 1 < end) {
+                bits |= (bytes[i + 1] & 0xFF) << 8;
+            }
+            if (i + 2 < end) {
+                bits |= bytes[i + 2] & 0xFF;
+            }
+            chars[pos++] = BASE64URL[bits >> 18];
+            chars[pos++] = BASE64URL[(bits >> 12) & 0x3F];
+            if (i + 1 < end) {
+                chars[pos++] = BASE64URL[(bits >> 6) & 0x3F];
+            }
+            if (i + 2 < end) {
+                chars[pos++] = BASE64URL[bits & 0x3F];
+            }
+        }
+        fCharsLen = pos;
+    }
+
+    /**
+     * Decodes UTF-8 bytes of a text string and appends them to the
+     * character buffer.
+     */
+    private void appendText(int size) {
+        int end = fPos + size;
+        ensureChars(fCharsLen + size);
+        fCharsLen = UTF8Codec.decode(fBuf, fPos, end, fChars, fCharsLen);
+        fPos = end;
+    }
+
+    private void checkSize(long size) {
+        if (size < 0 || size > fEnd - fPos) {
+            throw newError("Truncated string");
+        }
+    }
+
+    private void ensureChars(int len) {
+        if (fChars.length < len) {
+            char[] chars = new char[Math.max(len, fChars.length * 2)];
+            System.arraycopy(fChars, 0, chars, 0, fCharsLen);
+            fChars = chars;
+        }
+    }
+
+    private boolean isIndefinite(int head) {
+        return (head & 0x1F) == CBOR.INDEFINITE;
+    }
+
+    private IllegalArgumentException newError(String message) {
+        return new IllegalArgumentException(message
+            + " (position "
+            + fPos
+            + ")");
+    }
+
+    private void notifyBigInteger(
+        BigInteger value,
+        IJSONListener listener,
+        IJSONValueListener valueListener) {
+        if (valueListener == null) {
+            listener.onValue(value.toString());
+        } else if (value.bitLength() < 64) {
+            valueListener.onLong(value.longValue());
+        } else {
+            valueListener.onNumber(value.toString());
+        }
+    }
+
+    private void notifyDouble(
+        double value,
+        IJSONListener listener,
+        IJSONValueListener valueListener) {
+        if (valueListener != null) {
+            valueListener.onDouble(value);
+        } else {
+            listener.onValue(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Parses one data item from the given array and notifies the listener
+     * about its content.
+     * 
+     * @param buf the array containing the item
+     * @param listener the listener notified about parsed events
+     * @return the number of bytes occupied by the item
+     * @throws IllegalArgumentException if the array does not start with a
+     *         valid data item
+     */
+    public int parse(byte[] buf, IJSONListener listener)
+        throws IllegalArgumentException {
+        return parse(buf, 0, buf.length, listener);
+    }
+
+    /**
+     * Parses one data item from the specified range of the given array and
+     * notifies the listener about its content. Sequences of items (RFC 8742)
+     * can be parsed by calling this method again with the offset shifted by
+     * the returned number of bytes.
+     * 
+     * @param buf the array containing the item
+     * @param offset the position of the first byte of the item
+     * @param len the number of available bytes
+     * @param listener the listener notified about parsed events
+     * @return the number of bytes occupied by the item
+     * @throws IllegalArgumentException if the specified range does not start
+     *         with a valid data item
+     */
+    public int parse(byte[] buf, int offset, int len, IJSONListener listener)
+        throws IllegalArgumentException {
+        fBuf = buf;
+        fPos = offset;
+        fEnd = offset + len;
+        fDepth = 0;
+        try {
+            IJSONValueListener valueListener = null;
+            if (listener instanceof IJSONValueListener) {
+                valueListener = (IJSONValueListener) listener;
+            }
+            readItem(readByte(), listener, valueListener);
+            return fPos - offset;
+        } finally {
+            fBuf = null;
+        }
+    }
+
+    /**
+     * Reads the argument of an item with the given initial byte. Values
+     * bigger than <code>Long.MAX_VALUE</code> are returned as negative
+     * numbers.
+     */
+    private long readArgument(int head) {
+        int info = head & 0x1F;
+        if (info < 24) {
+            return info;
+        }
+        if (info > 27) {
+            throw newError("Invalid additional information " + info);
+        }
+        int size = 1 << (info - 24);
+        return readBits(size);
+    }
+
+    /**
+     * Reads the specified number of bytes in the network byte order.
+     */
+    private long readBits(int size) {
+        if (fEnd - fPos < size) {
+            throw newError("Truncated item");
+        }
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (fBuf[fPos++] & 0xFF);
+        }
+        return value;
+    }
+
+    private int readByte() {
+        if (fPos >= fEnd) {
+            throw newError("Truncated item");
+        }
+        return fBuf[fPos++] & 0xFF;
+    }
+
+    /**
+     * Reads a byte or a text string with the given initial byte in the
+     * character buffer.
+     */
+    private void readChars(int head) {
+        fCharsLen = 0;
+        int major = head >> 5;
+        if (!isIndefinite(head)) {
+            readChunk(major, readArgument(head));
+            return;
+        }
+        // Indefinite length strings contain definite length chunks
+        int bytesLen = 0;
+        while (true) {
+            int chunk = readByte();
+            if (chunk == CBOR.BREAK) {
+                break;
+            }
+            if (chunk >> 5 != major || isIndefinite(chunk)) {
+                throw newError("Invalid string chunk");
+            }
+            long size = readArgument(chunk);
+            if (major == CBOR.MAJOR_TEXT) {
+                readChunk(major, size);
+            } else {
+                checkSize(size);
+                if (bytesLen + size > fBytes.length) {
+                    byte[] bytes = new byte[(int) Math.max(
+                        bytesLen + size,
+                        fBytes.length * 2)];
+                    System.arraycopy(fBytes, 0, bytes, 0, bytesLen);
+                    fBytes = bytes;
+                }
+                System.arraycopy(fBuf, fPos, fBytes, bytesLen, (int) size);
+                bytesLen += size;
+                fPos += size;
+            }
+        }
+        if (major == CBOR.MAJOR_BYTES) {
+            appendBase64(fBytes, 0, bytesLen);
+        }
+    }
+
+    /**
+     * Appends a chunk of a string with the definite length to the character
+     * buffer.
+     */
+    private void readChunk(int major, long size) {
+        checkSize(size);
+        if (major == CBOR.MAJOR_TEXT) {
+            appendText((int) size);
+        } else {
+            appendBase64(fBuf, fPos, (int) size);
+            fPos += size;
+        }
+    }
+
+    /**
+     * Reads an item with the given initial byte and notifies the listener
+     * about it.
+     */
+    private void readItem(
+        int head,
+        IJSONListener listener,
+        IJSONValueListener valueListener) {
+        if (++fDepth > MAX_DEPTH) {
+            throw newError("Too deep nesting");
+        }
+        switch (head >> 5) {
+            case CBOR.MAJOR_UNSIGNED: {
+                if (isIndefinite(head)) {
+                    throw newError("Integers can not have indefinite length");
+                }
+                long value = readArgument(head);
+                if (value < 0) {
+                    notifyBigInteger(
+                        toUnsignedBigInteger(value),
+                        listener,
+                        valueListener);
+                } else if (valueListener != null) {
+                    valueListener.onLong(value);
+                } else {
+                    listener.onValue(String.valueOf(value));
+                }
+                break;
+            }
+            case CBOR.MAJOR_NEGATIVE: {
+                if (isIndefinite(head)) {
+                    throw newError("Integers can not have indefinite length");
+                }
+                long value = readArgument(head);
+                if (value < 0) {
+                    notifyBigInteger(
+                        toUnsignedBigInteger(value).not(),
+                        listener,
+                        valueListener);
+                } else if (valueListener != null) {
+                    valueListener.onLong(~value);
+                } else {
+                    listener.onValue(String.valueOf(~value));
+                }
+                break;
+            }
+            case CBOR.MAJOR_BYTES:
+            case CBOR.MAJOR_TEXT:
+                readChars(head);
+                if (valueListener != null) {
+                    valueListener.onString(fView);
+                } else {
+                    listener.onValue(fView.toString());
+                }
+                break;
+            case CBOR.MAJOR_ARRAY: {
+                boolean indefinite = isIndefinite(head);
+                long size = indefinite ? 0 : readArgument(head);
+                if (size < 0) {
+                    throw newError("Too many items");
+                }
+                listener.beginArray();
+                for (long i = 0; indefinite || i < size; i++) {
+                    int next = readByte();
+                    if (indefinite && next == CBOR.BREAK) {
+                        break;
+                    }
+                    listener.beginArrayElement();
+                    readItem(next, listener, valueListener);
+                    listener.endArrayElement();
+                }
+                listener.endArray();
+                break;
+            }
+            case CBOR.MAJOR_MAP: {
+                boolean indefinite = isIndefinite(head);
+                long size = indefinite ? 0 : readArgument(head);
+                if (size < 0) {
+                    throw newError("Too many items");
+                }
+                listener.beginObject();
+                for (long i = 0; indefinite || i < size; i++) {
+                    int next = readByte();
+                    if (indefinite && next == CBOR.BREAK) {
+                        break;
+                    }
+                    String name = readName(next);
+                    listener.beginObjectProperty(name);
+                    readItem(readByte(), listener, valueListener);
+                    listener.endObjectProperty(name);
+                }
+                listener.endObject();
+                break;
+            }
+            case CBOR.MAJOR_TAG: {
+                if (isIndefinite(head)) {
+                    throw newError("Tags can not have indefinite length");
+                }
+                long tag = readArgument(head);
+                int next = readByte();
+                if ((tag == 2 || tag == 3)
+                    && next >> 5 == CBOR.MAJOR_BYTES
+                    && !isIndefinite(next)) {
+                    // Bignums: the magnitude of the number (or of -1 - n for
+                    // negative numbers) in a byte string
+                    long size = readArgument(next);
+                    checkSize(size);
+                    byte[] bytes = new byte[(int) size];
+                    System.arraycopy(fBuf, fPos, bytes, 0, bytes.length);
+                    fPos += bytes.length;
+                    BigInteger value = new BigInteger(1, bytes);
+                    notifyBigInteger(
+                        tag == 2 ? value : value.not(),
+                        listener,
+                        valueListener);
+                } else {
+                    readItem(next, listener, valueListener);
+                }
+                break;
+            }
+            default:
+                readSimple(head, listener, valueListener);
+                break;
+        }
+        fDepth--;
+    }
+
+    /**
+     * Reads a map key with the given initial byte.
+     */
+    private String readName(int head) {
+        int major = head >> 5;
+        if (major == CBOR.MAJOR_TEXT) {
+            readChars(head);
+            return fSymbolTable != null
+                ? fSymbolTable.getSymbol(fView)
+                : fView.toString();
+        }
+        if (major == CBOR.MAJOR_UNSIGNED && !isIndefinite(head)) {
+            long value = readArgument(head);
+            if (value >= 0) {
+                return String.valueOf(value);
+            }
+        } else if (major == CBOR.MAJOR_NEGATIVE && !isIndefinite(head)) {
+            long value = readArgument(head);
+            if (value >= 0) {
+                return String.valueOf(~value);
+            }
+        }
+        throw newError("Unsupported map key");
+    }
+
+    /**
+     * Reads a simple value or a float with the given initial byte.
+     */
+    private void readSimple(
+        int head,
+        IJSONListener listener,
+        IJSONValueListener valueListener) {
+        switch (head) {
+            case CBOR.FALSE:
+            case CBOR.TRUE: {
+                boolean value = head == CBOR.TRUE;
+                if (valueListener != null) {
+                    valueListener.onBoolean(value);
+                } else {
+                    listener.onValue(value ? "true" : "false");
+                }
+                break;
+            }
+            case CBOR.NULL:
+                if (valueListener != null) {
+                    valueListener.onNull();
+                } else {
+                    listener.onValue("null");
+                }
+                break;
+            case CBOR.UNDEFINED:
+                listener.onValue(null);
+                break;
+            case CBOR.FLOAT16:
+                notifyDouble(
+                    toDouble((int) readBits(2)),
+                    listener,
+                    valueListener);
+                break;
+            case CBOR.FLOAT32:
+                notifyDouble(
+                    Float.intBitsToFloat((int) readBits(4)),
+                    listener,
+                    valueListener);
+                break;
+            case CBOR.FLOAT64:
+                notifyDouble(
+                    Double.longBitsToDouble(readBits(8)),
+                    listener,
+                    valueListener);
+                break;
+            case CBOR.BREAK:
+                fPos--;
+                throw newError("Unexpected break");
+            default:
+                fPos--;
+                throw newError("Unsupported simple value " + (head & 0x1F));
+        }
+    }
+
+}
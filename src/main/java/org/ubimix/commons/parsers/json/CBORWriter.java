@@ -0,0 +1,368 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+
+/**
+ * This listener writes JSON events to an {@link OutputStream} in the CBOR
+ * format (RFC 8949). It can be used everywhere a text serializer is used, for
+ * example with the {@link JSONParser} or with the {@link JSONHelper}, to
+ * switch the wire format without changing the code producing events. Values
+ * are encoded natively: integers as CBOR integers, double values as single
+ * precision floats when it is possible without loss of precision and as
+ * double precision floats otherwise, integers out of the range of the
+ * <code>long</code> type as bignums (tags 2 and 3), strings as UTF-8 text
+ * strings. Objects and arrays have the indefinite length.
+ * <p>
+ * Properties and array elements without values are written as
+ * <code>undefined</code>, so they are not confused with <code>null</code>
+ * values. All written bytes are accumulated in an internal buffer;
+ * the {@link #flush()} method should be called at the end of serialization to
+ * write remaining bytes to the output.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class CBORWriter implements IJSONValueListener {
+
+    /**
+     * The default size of the internal buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final byte[] fBuf;
+
+    private int fLen;
+
+    /**
+     * This object recognizes numbers given by their text.
+     */
+    private final JSONLiteral fLiteral = new JSONLiteral();
+
+    private final OutputStream fOutput;
+
+    /**
+     * This flag is <code>true</code> when a property or an array element is
+     * opened but its value is not written yet.
+     */
+    private boolean fValueExpected;
+
+    /**
+     * @param output the output for serialized events
+     */
+    public CBORWriter(OutputStream output) {
+        this(output, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param output the output for serialized events
+     * @param bufferSize the size of the internal buffer
+     */
+    public CBORWriter(OutputStream output, int bufferSize) {
+        if (bufferSize < 9) {
+            throw new IllegalArgumentException(
+                "Buffer size should be at least 9 bytes");
+        }
+        fOutput = output;
+        fBuf = new byte[bufferSize];
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArray()
+     */
+    public void beginArray() {
+        fValueExpected = false;
+        write((CBOR.MAJOR_ARRAY << 5) | CBOR.INDEFINITE);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArrayElement()
+     */
+    public void beginArrayElement() {
+        fValueExpected = true;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObject()
+     */
+    public void beginObject() {
+        fValueExpected = false;
+        write((CBOR.MAJOR_MAP << 5) | CBOR.INDEFINITE);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObjectProperty(java.lang.String)
+     */
+    public void beginObjectProperty(String property) {
+        writeText(property != null ? property : "null");
+        fValueExpected = true;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArray()
+     */
+    public void endArray() {
+        write(CBOR.BREAK);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArrayElement()
+     */
+    public void endArrayElement() {
+        writeMissingValue();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObject()
+     */
+    public void endObject() {
+        write(CBOR.BREAK);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObjectProperty(java.lang.String)
+     */
+    public void endObjectProperty(String property) {
+        writeMissingValue();
+    }
+
+    /**
+     * Writes all buffered bytes to the output.
+     * 
+     * @throws JSONWriterException if the output fails to accept bytes
+     */
+    public void flush() throws JSONWriterException {
+        if (fLen == 0) {
+            return;
+        }
+        try {
+            fOutput.write(fBuf, 0, fLen);
+        } catch (IOException e) {
+            throw new JSONWriterException(e);
+        } finally {
+            fLen = 0;
+        }
+    }
+
+    /**
+     * Returns the output of this writer.
+     * 
+     * @return the output of this writer
+     */
+    public OutputStream getOutput() {
+        return fOutput;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onBoolean(boolean)
+     */
+    public void onBoolean(boolean value) {
+        fValueExpected = false;
+        write(value ? CBOR.TRUE : CBOR.FALSE);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onDouble(double)
+     */
+    public void onDouble(double value) {
+        fValueExpected = false;
+        reserve(9);
+        float f = (float) value;
+        if (f == value || value != value) {
+            fBuf[fLen++] = (byte) CBOR.FLOAT32;
+            writeBits(Float.floatToIntBits(f), 4);
+        } else {
+            fBuf[fLen++] = (byte) CBOR.FLOAT64;
+            writeBits(Double.doubleToLongBits(value), 8);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onLong(long)
+     */
+    public void onLong(long value) {
+        fValueExpected = false;
+        if (value >= 0) {
+            writeHead(CBOR.MAJOR_UNSIGNED, value);
+        } else {
+            writeHead(CBOR.MAJOR_NEGATIVE, ~value);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNull()
+     */
+    public void onNull() {
+        fValueExpected = false;
+        write(CBOR.NULL);
+    }
+
+    /**
+     * Writes a number given by its text. Integers out of the range of the
+     * <code>long</code> type are written as bignums, so they do not lose
+     * precision; all other numbers are written as integers or floats.
+     * 
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNumber(java.lang.CharSequence)
+     */
+    public void onNumber(CharSequence value) {
+        switch (fLiteral.parse(value)) {
+            case JSONLiteral.LONG:
+                onLong(fLiteral.getLong());
+                break;
+            case JSONLiteral.DOUBLE:
+                onDouble(fLiteral.getDouble());
+                break;
+            case JSONLiteral.NUMBER:
+                if (fLiteral.isBigInteger()) {
+                    writeBigInteger(new BigInteger(value.toString()));
+                } else {
+                    onDouble(fLiteral.getDouble());
+                }
+                break;
+            default:
+                onString(value);
+                break;
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onString(java.lang.CharSequence)
+     */
+    public void onString(CharSequence value) {
+        fValueExpected = false;
+        writeText(value);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#onValue(java.lang.String)
+     */
+    public void onValue(String value) {
+        if (value == null) {
+            fValueExpected = false;
+            write(CBOR.UNDEFINED);
+        } else {
+            onString(value);
+        }
+    }
+
+    /**
+     * Flushes the buffer if it does not have enough space for the specified
+     * number of bytes.
+     */
+    private void reserve(int len) {
+        if (fLen + len > fBuf.length) {
+            flush();
+        }
+    }
+
+    private void write(int b) {
+        if (fLen == fBuf.length) {
+            flush();
+        }
+        fBuf[fLen++] = (byte) b;
+    }
+
+    /**
+     * Writes the given integer as a bignum: a positive (2) or a negative (3)
+     * tag followed by a byte string with the magnitude of the number.
+     */
+    private void writeBigInteger(BigInteger value) {
+        fValueExpected = false;
+        int tag = 2;
+        if (value.signum() < 0) {
+            // Negative bignums contain the value of -1 - n
+            tag = 3;
+            value = value.not();
+        }
+        byte[] bytes = value.toByteArray();
+        int offset = bytes[0] == 0 ? 1 : 0;
+        writeHead(CBOR.MAJOR_TAG, tag);
+        writeHead(CBOR.MAJOR_BYTES, bytes.length - offset);
+        for (int i = offset; i < bytes.length; i++) {
+            write(bytes[i]);
+        }
+    }
+
+    /**
+     * Writes the given number of the lowest bytes of the specified value in
+     * the network byte order. The buffer should already have enough space
+     * for them.
+     */
+    private void writeBits(long bits, int size) {
+        for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+            fBuf[fLen++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * Writes the initial byte of an item with the specified major type and
+     * the given (unsigned) argument.
+     */
+    private void writeHead(int major, long value) {
+        reserve(9);
+        int type = major << 5;
+        if (value >= 0 && value < 24) {
+            fBuf[fLen++] = (byte) (type | (int) value);
+        } else if (value >= 0 && value < 0x100) {
+            fBuf[fLen++] = (byte) (type | 24);
+            writeBits(value, 1);
+        } else if (value >= 0 && value < 0x10000) {
+            fBuf[fLen++] = (byte) (type | 25);
+            writeBits(value, 2);
+        } else if (value >= 0 && value < 0x100000000L) {
+            fBuf[fLen++] = (byte) (type | 26);
+            writeBits(value, 4);
+        } else {
+            fBuf[fLen++] = (byte) (type | 27);
+            writeBits(value, 8);
+        }
+    }
+
+    private void writeMissingValue() {
+        if (fValueExpected) {
+            onValue(null);
+        }
+    }
+
+    /**
+     * Writes a text string: the length of the string in UTF-8 bytes and its
+     * encoded characters.
+     */
+    private void writeText(CharSequence str) {
+        writeHead(CBOR.MAJOR_TEXT, UTF8Codec.getEncodedLength(str));
+        int len = str.length();
+        int i = 0;
+        while (i < len) {
+            if (fBuf.length - fLen < 6) {
+                flush();
+            }
+            // Each character takes at most three bytes
+            int n = Math.min(len - i, (fBuf.length - fLen) / 3);
+            if (i + n < len
+                && Character.isHighSurrogate(str.charAt(i + n - 1))) {
+                // Surrogate pairs are not split
+                n--;
+            }
+            fLen = UTF8Codec.encode(str, i, i + n, fBuf, fLen);
+            i += n;
+        }
+    }
+
+}
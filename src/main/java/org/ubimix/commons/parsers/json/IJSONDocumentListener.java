@@ -0,0 +1,44 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This is an extension of the {@link IJSONListener} interface notified about
+ * boundaries of top-level values read by the
+ * {@link JSONParser#parseStream(org.ubimix.commons.parsers.CharStream, IJSONListener)}
+ * method. Each top-level value (an object, an array or a scalar) is
+ * considered as a separate document.
+ * 
+ * @author kotelnikov
+ */
+public interface IJSONDocumentListener extends IJSONListener {
+
+    /**
+     * This method is called before the first event of a document.
+     * 
+     * @param index the index of the document in the stream (starting from 0)
+     */
+    void beginDocument(int index);
+
+    /**
+     * This method is called after the last event of a document.
+     * 
+     * @param index the index of the document in the stream (starting from 0)
+     */
+    void endDocument(int index);
+
+}
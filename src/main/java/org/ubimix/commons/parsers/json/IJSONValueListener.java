@@ -0,0 +1,78 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This is an extension of the {@link IJSONListener} interface receiving typed
+ * values. If a listener given to the {@link JSONParser} implements this
+ * interface then the parser does not call the
+ * {@link IJSONListener#onValue(String)} method; instead it recognizes numbers,
+ * booleans and <code>null</code> values and notifies about them using typed
+ * methods. All other values are given to the {@link #onString(CharSequence)}
+ * method.
+ * <p>
+ * Parsers of JSON texts call the {@link #onLong(long)} and
+ * {@link #onDouble(double)} methods only if the {@link String#valueOf(long)}
+ * and {@link String#valueOf(double)} methods give back the original text of
+ * the number; all other numbers (like integers out of the range of the
+ * <code>long</code> type) are given to the {@link #onNumber(CharSequence)}
+ * method. Object properties without values are notified using the
+ * {@link #onValue(String)} method with a <code>null</code> value, as for all
+ * other listeners. So the original text of each value can be restored from
+ * typed events.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public interface IJSONValueListener extends IJSONListener {
+
+    void onBoolean(boolean value);
+
+    void onDouble(double value);
+
+    void onLong(long value);
+
+    /**
+     * This method is called for <code>null</code> values.
+     */
+    void onNull();
+
+    /**
+     * Notifies about a number given by its original text. This method is
+     * called for numbers which can not be given to the {@link #onLong(long)}
+     * or {@link #onDouble(double)} methods without changing their text: for
+     * integers out of the range of the <code>long</code> type and for
+     * numbers written in another form than the one produced by the
+     * {@link String#valueOf(double)} method (like "1e5", "1.50" or "-0"). The
+     * given character sequence is re-used by the parser, so it is valid only
+     * during this call.
+     * 
+     * @param value the text of the number
+     */
+    void onNumber(CharSequence value);
+
+    /**
+     * Notifies about a string value. The given character sequence is re-used
+     * by the parser, so it is valid only during this call; listeners should
+     * copy it (for example using the {@link CharSequence#toString()} method)
+     * to keep the value.
+     * 
+     * @param value the string value
+     */
+    void onString(CharSequence value);
+
+}
@@ -16,49 +16,62 @@
  * ************************************************************************** */
 package org.ubimix.commons.parsers.json;
 
-import java.util.Stack;
-
-import org.ubimix.commons.parsers.json.IJSONListener;
-
 /**
+ * This helper generates events of a JSON document for the given listener
+ * and checks that elements are opened in valid contexts. Opened arrays,
+ * objects and properties are kept in a stack of primitive types, so the
+ * helper does not create objects for generated elements. If the listener
+ * implements the {@link IJSONValueListener} interface then typed values are
+ * given to it directly, without conversion to strings.
+ * 
  * @author kotelnikov
  */
 public class JSONHelper {
 
-    private abstract class Action {
-
-        private int fType;
-
-        public Action(int type) {
-            fType = type;
-        }
-
-        public abstract void begin();
-
-        public boolean doCheck(int type) {
-            return (type & fType) != 0;
-        }
-
-        public abstract void end();
-    }
-
     private static final int TYPE_ARRAY = 1;
 
     private static final int TYPE_OBJECT = 2;
 
     private static final int TYPE_OBJECT_PROPERTY = 4;
 
-    private IJSONListener fListener;
+    /**
+     * The number of opened elements.
+     */
+    private int fDepth;
 
-    private Action fPrevAction;
+    private final IJSONListener fListener;
+
+    /**
+     * Names of opened properties; other elements have <code>null</code>
+     * names.
+     */
+    private String[] fNames = new String[16];
 
-    private Stack<Action> fStack = new Stack<Action>();
+    /**
+     * The type of the last closed element or <code>0</code> if a new element
+     * was opened after it.
+     */
+    private int fPrevType;
 
     /**
-     * 
+     * Types of opened elements.
+     */
+    private int[] fTypes = new int[16];
+
+    /**
+     * The typed listener or <code>null</code> if the listener does not
+     * implement the {@link IJSONValueListener} interface.
+     */
+    private final IJSONValueListener fValueListener;
+
+    /**
+     * @param listener the listener receiving generated events
      */
     public JSONHelper(IJSONListener listener) {
         fListener = listener;
+        fValueListener = listener instanceof IJSONValueListener
+            ? (IJSONValueListener) listener
+            : null;
     }
 
     public void addArrayValue(String... values) {
@@ -72,10 +85,41 @@ public class JSONHelper {
         }
     }
 
+    public void addProperty(String property, boolean value) {
+        checkObject();
+        fListener.beginObjectProperty(property);
+        if (fValueListener != null) {
+            fValueListener.onBoolean(value);
+        } else {
+            fListener.onValue(value ? "true" : "false");
+        }
+        fListener.endObjectProperty(property);
+    }
+
+    public void addProperty(String property, double value) {
+        checkObject();
+        fListener.beginObjectProperty(property);
+        if (fValueListener != null) {
+            fValueListener.onDouble(value);
+        } else {
+            fListener.onValue(String.valueOf(value));
+        }
+        fListener.endObjectProperty(property);
+    }
+
+    public void addProperty(String property, long value) {
+        checkObject();
+        fListener.beginObjectProperty(property);
+        if (fValueListener != null) {
+            fValueListener.onLong(value);
+        } else {
+            fListener.onValue(String.valueOf(value));
+        }
+        fListener.endObjectProperty(property);
+    }
+
     public void addProperty(String property, String value) {
-        if (!check(TYPE_OBJECT))
-            throw new IllegalStateException(
-                "Object property can be defined only for an object.");
+        checkObject();
         fListener.beginObjectProperty(property);
         fListener.onValue(value);
         fListener.endObjectProperty(property);
@@ -86,21 +130,10 @@ public class JSONHelper {
             throw new IllegalStateException(
                 "Array can be defined only as a value of a property "
                     + "or as a value of an another array.");
-        push(new Action(TYPE_ARRAY) {
-            @Override
-            public void begin() {
-                if (check(TYPE_ARRAY))
-                    fListener.beginArrayElement();
-                fListener.beginArray();
-            }
-
-            @Override
-            public void end() {
-                fListener.endArray();
-                if (check(TYPE_ARRAY))
-                    fListener.endArrayElement();
-            }
-        });
+        if (check(TYPE_ARRAY))
+            fListener.beginArrayElement();
+        fListener.beginArray();
+        push(TYPE_ARRAY, null);
     }
 
     public void beginObject() {
@@ -108,79 +141,75 @@ public class JSONHelper {
             throw new IllegalStateException(
                 "Object can be defined only as a value of a property "
                     + "or as a value of an array.");
-        push(new Action(TYPE_OBJECT) {
-            @Override
-            public void begin() {
-                if (check(TYPE_ARRAY))
-                    fListener.beginArrayElement();
-                fListener.beginObject();
-            }
-
-            @Override
-            public void end() {
-                fListener.endObject();
-                if (check(TYPE_ARRAY))
-                    fListener.endArrayElement();
-            }
-        });
+        if (check(TYPE_ARRAY))
+            fListener.beginArrayElement();
+        fListener.beginObject();
+        push(TYPE_OBJECT, null);
     }
 
-    public void beginProperty(final String property) {
-        if (!check(TYPE_OBJECT))
-            throw new IllegalStateException(
-                "Object property can be defined only for an object.");
-        push(new Action(TYPE_OBJECT_PROPERTY) {
-            @Override
-            public void begin() {
-                fListener.beginObjectProperty(property);
-            }
-
-            @Override
-            public void end() {
-                if (!checkPrevious(TYPE_OBJECT | TYPE_ARRAY))
-                    fListener.onValue(null);
-                fListener.endObjectProperty(property);
-            }
-        });
+    public void beginProperty(String property) {
+        checkObject();
+        fListener.beginObjectProperty(property);
+        push(TYPE_OBJECT_PROPERTY, property);
     }
 
     private boolean check(int type) {
         if (isRoot())
             return false;
-        Action info = fStack.peek();
-        return info.doCheck(type);
+        return (fTypes[fDepth - 1] & type) != 0;
     }
 
-    private boolean checkPrevious(int type) {
-        if (isRoot())
-            return false;
-        if (fPrevAction == null)
-            return false;
-        return fPrevAction.doCheck(type);
+    private void checkObject() {
+        if (!check(TYPE_OBJECT))
+            throw new IllegalStateException(
+                "Object property can be defined only for an object.");
     }
 
     public void end() {
-        pop();
+        if (isRoot())
+            throw new IllegalStateException("There is no element to close.");
+        fDepth--;
+        int type = fTypes[fDepth];
+        String property = fNames[fDepth];
+        fNames[fDepth] = null;
+        switch (type) {
+            case TYPE_ARRAY:
+                fListener.endArray();
+                if (check(TYPE_ARRAY))
+                    fListener.endArrayElement();
+                break;
+            case TYPE_OBJECT:
+                fListener.endObject();
+                if (check(TYPE_ARRAY))
+                    fListener.endArrayElement();
+                break;
+            default:
+                if ((fPrevType & (TYPE_OBJECT | TYPE_ARRAY)) == 0) {
+                    fListener.onValue(null);
+                }
+                fListener.endObjectProperty(property);
+                break;
+        }
+        fPrevType = type;
     }
 
-    /**
-     * @return
-     */
     private boolean isRoot() {
-        return fStack.isEmpty();
+        return fDepth == 0;
     }
 
-    private void pop() {
-        Action info = fStack.pop();
-        info.end();
-        fPrevAction = info;
-    }
-
-    private Action push(Action info) {
-        info.begin();
-        fStack.push(info);
-        fPrevAction = null;
-        return info;
+    private void push(int type, String property) {
+        if (fDepth == fTypes.length) {
+            int[] types = new int[fDepth * 2];
+            System.arraycopy(fTypes, 0, types, 0, fDepth);
+            fTypes = types;
+            String[] names = new String[fDepth * 2];
+            System.arraycopy(fNames, 0, names, 0, fDepth);
+            fNames = names;
+        }
+        fTypes[fDepth] = type;
+        fNames[fDepth] = property;
+        fDepth++;
+        fPrevType = 0;
     }
 
 }
@@ -0,0 +1,280 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This class recognizes types of non-quoted JSON values: numbers, booleans
+ * and <code>null</code>. Numbers are transformed directly from characters of
+ * the given sequence; the {@link Double#parseDouble(String)} and
+ * {@link Long#parseLong(String)} methods are used only for numbers which can
+ * not be represented exactly using the fast path. Numbers are reported as
+ * {@link #LONG} or {@link #DOUBLE} values only if the
+ * {@link String#valueOf(long)} and {@link String#valueOf(double)} methods
+ * give back their original text; all other numbers have the {@link #NUMBER}
+ * type, so parsers can give them to listeners without loss of precision or
+ * formatting. Instances of this class are re-used for all values read by a
+ * parser.
+ * 
+ * @author kotelnikov
+ */
+class JSONLiteral {
+
+    public static final int BOOLEAN = 1;
+
+    public static final int DOUBLE = 2;
+
+    public static final int LONG = 3;
+
+    public static final int NULL = 4;
+
+    /**
+     * The type of numbers which should be reported using their original
+     * text: integers out of the range of the <code>long</code> type and
+     * numbers written in another form than the one produced by the
+     * {@link String#valueOf(double)} method (like "1e5", "1.50" or "-0").
+     */
+    public static final int NUMBER = 5;
+
+    public static final int STRING = 0;
+
+    /**
+     * The maximal number of significant decimal digits of a double value
+     * which is always printed back with the same digits.
+     */
+    private static final int MAX_DOUBLE_DIGITS = 15;
+
+    /**
+     * The maximal number of significant decimal digits which can be kept in
+     * a long value without overflow.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * Powers of ten which are exactly representable as double values.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0,
+        1e1,
+        1e2,
+        1e3,
+        1e4,
+        1e5,
+        1e6,
+        1e7,
+        1e8,
+        1e9,
+        1e10,
+        1e11,
+        1e12,
+        1e13,
+        1e14,
+        1e15,
+        1e16,
+        1e17,
+        1e18,
+        1e19,
+        1e20,
+        1e21,
+        1e22 };
+
+    private static boolean equals(CharSequence first, String second) {
+        int len = first.length();
+        if (len != second.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (first.charAt(i) != second.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private boolean fBigInteger;
+
+    private boolean fBoolean;
+
+    private double fDouble;
+
+    private long fLong;
+
+    public boolean getBoolean() {
+        return fBoolean;
+    }
+
+    public double getDouble() {
+        return fDouble;
+    }
+
+    public long getLong() {
+        return fLong;
+    }
+
+    /**
+     * Returns <code>true</code> if the last recognized value is a
+     * {@link #NUMBER} out of the range of the <code>long</code> type. Such
+     * integers are available only as text. The values of all other numbers
+     * are available using the {@link #getDouble()} method.
+     * 
+     * @return <code>true</code> if the last value is a big integer
+     */
+    public boolean isBigInteger() {
+        return fBigInteger;
+    }
+
+    /**
+     * Recognizes the type of the given value. Values of numbers and booleans
+     * are available using the {@link #getLong()}, {@link #getDouble()} and
+     * {@link #getBoolean()} methods.
+     * 
+     * @param buf the value to recognize
+     * @return the type of the value ({@link #STRING}, {@link #BOOLEAN},
+     *         {@link #DOUBLE}, {@link #LONG}, {@link #NUMBER} or
+     *         {@link #NULL})
+     */
+    public int parse(CharSequence buf) {
+        fBigInteger = false;
+        int len = buf.length();
+        char first = len > 0 ? buf.charAt(0) : '\0';
+        if (first == 'n' && equals(buf, "null")) {
+            return NULL;
+        }
+        if (first == 't' && equals(buf, "true")) {
+            fBoolean = true;
+            return BOOLEAN;
+        }
+        if (first == 'f' && equals(buf, "false")) {
+            fBoolean = false;
+            return BOOLEAN;
+        }
+        if (first != '-' && !isDigit(first)) {
+            return STRING;
+        }
+        int i = 0;
+        boolean negative = first == '-';
+        if (negative) {
+            i++;
+        }
+        int start = i;
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        for (; i < len && isDigit(buf.charAt(i)); i++) {
+            if (digits < MAX_LONG_DIGITS) {
+                mantissa = mantissa * 10 + (buf.charAt(i) - '0');
+                if (mantissa > 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                exact = false;
+            }
+        }
+        int intLen = i - start;
+        // Numbers with leading zeros are not valid JSON numbers, they are
+        // reported as strings (zip codes, identifiers...)
+        if (intLen == 0 || (intLen > 1 && buf.charAt(start) == '0')) {
+            return STRING;
+        }
+        boolean integer = true;
+        // Decimal numbers are printed back in the same form only if they
+        // have a fraction without trailing zeros and no exponent
+        boolean canonical = false;
+        if (i < len && buf.charAt(i) == '.') {
+            integer = false;
+            int fractionStart = ++i;
+            for (; i < len && isDigit(buf.charAt(i)); i++) {
+                if (digits < MAX_LONG_DIGITS) {
+                    mantissa = mantissa * 10 + (buf.charAt(i) - '0');
+                    if (mantissa > 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+            }
+            if (i == fractionStart) {
+                return STRING;
+            }
+            canonical = buf.charAt(i - 1) != '0' || i - fractionStart == 1;
+        }
+        if (i < len && (buf.charAt(i) == 'e' || buf.charAt(i) == 'E')) {
+            integer = false;
+            canonical = false;
+            i++;
+            boolean negativeExponent = false;
+            if (i < len && (buf.charAt(i) == '-' || buf.charAt(i) == '+')) {
+                negativeExponent = buf.charAt(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int value = 0;
+            for (; i < len && isDigit(buf.charAt(i)); i++) {
+                if (value < 100000) {
+                    value = value * 10 + (buf.charAt(i) - '0');
+                }
+            }
+            if (i == exponentStart) {
+                return STRING;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != len) {
+            return STRING;
+        }
+        if (integer && exact) {
+            if (negative && mantissa == 0) {
+                // The sign of "-0" is kept only by double values
+                fDouble = -0.0;
+                return NUMBER;
+            }
+            fLong = negative ? -mantissa : mantissa;
+            return LONG;
+        }
+        if (integer) {
+            try {
+                fLong = Long.parseLong(buf.toString());
+                return LONG;
+            } catch (NumberFormatException e) {
+                fBigInteger = true;
+                return NUMBER;
+            }
+        }
+        if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0
+                ? mantissa / POWERS_OF_TEN[-exponent]
+                : mantissa * POWERS_OF_TEN[exponent];
+            fDouble = negative ? -value : value;
+        } else {
+            fDouble = Double.parseDouble(buf.toString());
+            canonical = false;
+        }
+        // String.valueOf(double) uses the plain notation only for values in
+        // the [1e-3, 1e7) range and zeros
+        double abs = Math.abs(fDouble);
+        canonical &= digits <= MAX_DOUBLE_DIGITS
+            && (mantissa == 0 || (abs >= 1e-3 && abs < 1e7));
+        return canonical ? DOUBLE : NUMBER;
+    }
+
+}
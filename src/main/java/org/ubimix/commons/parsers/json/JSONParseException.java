@@ -0,0 +1,45 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import org.ubimix.commons.parsers.CharStream.Pointer;
+
+/**
+ * This exception is thrown by the {@link JSONParser} in the strict mode when
+ * the parsed text does not conform to RFC 8259.
+ * 
+ * @author kotelnikov
+ */
+public class JSONParseException extends RuntimeException {
+
+    private static final long serialVersionUID = -2306462941853385204L;
+
+    private Pointer fPointer;
+
+    public JSONParseException(Pointer pointer, String message) {
+        super(message + " at " + pointer);
+        fPointer = pointer;
+    }
+
+    /**
+     * @return the position in the stream where the error was detected
+     */
+    public Pointer getPointer() {
+        return fPointer;
+    }
+
+}
@@ -17,37 +17,593 @@
 package org.ubimix.commons.parsers.json;
 
 import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStreamPool;
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
 
 /**
+ * This parser reads JSON texts and notifies listeners about their structure.
+ * It has two modes:
+ * <ul>
+ * <li>The lenient mode (used by default) accepts single and double quotes,
+ * non-quoted property names and values, missing commas and colons, and skips
+ * all characters before the first object.</li>
+ * <li>The strict mode accepts only texts conforming to RFC 8259 and throws a
+ * {@link JSONParseException} on the first syntax error. Numbers are validated
+ * and all escape sequences are decoded.</li>
+ * </ul>
+ * Both modes classify characters using the same lookup table.
+ * 
  * @author kotelnikov
  */
 public class JSONParser {
 
+    /**
+     * Classes of the first 128 characters. Each value is a combination of the
+     * <code>CLASS_XXX</code> flags.
+     */
+    private static final byte[] CHAR_CLASSES = newCharClasses();
+
+    /**
+     * Characters terminating non-quoted values: structural characters, spaces
+     * and the end of the stream.
+     */
+    private static final byte CLASS_DELIMITER = 1;
+
+    /**
+     * Hexadecimal digits used in "&#92;uXXXX" escape sequences.
+     */
+    private static final byte CLASS_HEX = 2;
+
+    /**
+     * Space characters.
+     */
+    private static final byte CLASS_SPACE = 4;
+
+    /**
+     * Characters which can not be copied as is from strings in the strict
+     * mode: double quotes, back slashes and control characters.
+     */
+    private static final byte CLASS_STRING_END = 8;
+
+    /**
+     * Values of escaped characters defined by RFC 8259; the 'u' character is
+     * processed separately.
+     */
+    private static final char[] ESCAPES = newEscapes();
+
+    /**
+     * This matcher accepts characters defined by the
+     * {@link #isSpaceChar(char)} method.
+     */
+    static final ICharMatcher SPACE_MATCHER = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isSpaceChar(ch);
+        }
+    };
+
+    /**
+     * This matcher stops on characters terminating string runs in the strict
+     * mode.
+     */
+    private static final ICharMatcher STRING_MATCHER = new ICharMatcher() {
+        public boolean match(char ch) {
+            return ch < 128 && (CHAR_CLASSES[ch] & CLASS_STRING_END) != 0;
+        }
+    };
+
+    /**
+     * This matcher accepts characters defined by the
+     * {@link #isValueDelimiter(char)} method.
+     */
+    static final ICharMatcher VALUE_DELIMITER_MATCHER = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isValueDelimiter(ch);
+        }
+    };
+
+    /**
+     * Returns the value of an escaped character.
+     * 
+     * @param ch the character following a back slash
+     * @return the value of the escaped character or <code>0</code> if the
+     *         given character does not define an escape sequence (the 'u'
+     *         character should be processed separately)
+     */
+    static char getEscapedChar(char ch) {
+        return ch < 128 ? ESCAPES[ch] : 0;
+    }
+
+    static int getHexValue(char ch) {
+        return ch <= '9' ? ch - '0' : (ch | 0x20) - 'a' + 10;
+    }
+
+    static boolean isHex(char ch) {
+        return ch < 128 && (CHAR_CLASSES[ch] & CLASS_HEX) != 0;
+    }
+
+    static boolean isSpaceChar(char ch) {
+        return ch < 128 && (CHAR_CLASSES[ch] & CLASS_SPACE) != 0;
+    }
+
+    /**
+     * @param ch the character to check
+     * @return <code>true</code> if the given character terminates non-quoted
+     *         values
+     */
+    static boolean isValueDelimiter(char ch) {
+        return ch < 128 && (CHAR_CLASSES[ch] & CLASS_DELIMITER) != 0;
+    }
+
+    private static byte[] newCharClasses() {
+        byte[] classes = new byte[128];
+        for (char ch = 0; ch < 0x20; ch++) {
+            classes[ch] |= CLASS_STRING_END;
+        }
+        for (char ch : "{}[]:,\0".toCharArray()) {
+            classes[ch] |= CLASS_DELIMITER;
+        }
+        for (char ch : " \t\n\r".toCharArray()) {
+            classes[ch] |= CLASS_DELIMITER | CLASS_SPACE;
+        }
+        for (char ch : "0123456789abcdefABCDEF".toCharArray()) {
+            classes[ch] |= CLASS_HEX;
+        }
+        classes['"'] |= CLASS_STRING_END;
+        classes['\\'] |= CLASS_STRING_END;
+        return classes;
+    }
+
+    private static char[] newEscapes() {
+        char[] escapes = new char[128];
+        escapes['"'] = '"';
+        escapes['\\'] = '\\';
+        escapes['/'] = '/';
+        escapes['b'] = '\b';
+        escapes['f'] = '\f';
+        escapes['n'] = '\n';
+        escapes['r'] = '\r';
+        escapes['t'] = '\t';
+        return escapes;
+    }
+
+    /**
+     * Reads a value started with the specified quote in the lenient mode.
+     * 
+     * @param stream the stream to read
+     * @param quot the quote character
+     * @param buf the buffer for the value; if it is <code>null</code> then the
+     *        value is skipped
+     * @see #readQuoted(CharStream, char, StringBuilder, boolean)
+     */
+    static void readQuoted(CharStream stream, char quot, StringBuilder buf) {
+        readQuoted(stream, quot, buf, false);
+    }
+
+    /**
+     * Reads a value started with the specified quote. The current character
+     * of the stream should be the opening quote. Escaped characters are
+     * transformed and added to the buffer. In the lenient mode unknown and
+     * malformed escape sequences are copied without the back slash and
+     * unterminated values are closed at the end of the stream. In the strict
+     * mode these cases and non-escaped control characters are reported as
+     * errors.
+     * 
+     * @param stream the stream to read
+     * @param quot the quote character
+     * @param buf the buffer for the value; if it is <code>null</code> then the
+     *        value is skipped
+     * @param strict the strict mode flag
+     * @throws JSONParseException if the value is not valid in the strict
+     *         mode
+     */
+    static void readQuoted(
+        CharStream stream,
+        char quot,
+        StringBuilder buf,
+        boolean strict) throws JSONParseException {
+        stream.incPos();
+        while (true) {
+            if (strict) {
+                if (buf != null) {
+                    stream.readUntil(STRING_MATCHER, buf);
+                } else {
+                    stream.skipUntil(STRING_MATCHER);
+                }
+            } else {
+                if (buf != null) {
+                    stream.readUntil(quot, '\\', buf);
+                } else {
+                    stream.skipUntil(quot, '\\');
+                }
+            }
+            if (stream.isTerminated()) {
+                if (strict) {
+                    throw new JSONParseException(
+                        stream.getPointer(),
+                        "Unterminated string");
+                }
+                break;
+            }
+            char ch = stream.getChar();
+            if (ch == quot) {
+                stream.incPos();
+                break;
+            }
+            if (ch != '\\') {
+                throw new JSONParseException(
+                    stream.getPointer(),
+                    "Non-escaped control character in a string");
+            }
+            stream.incPos();
+            if (stream.isTerminated()) {
+                if (strict) {
+                    throw new JSONParseException(
+                        stream.getPointer(),
+                        "Unterminated escape sequence");
+                }
+                break;
+            }
+            ch = stream.getChar();
+            stream.incPos();
+            if (ch == 'u') {
+                readUnicodeEscape(stream, buf, strict);
+                continue;
+            }
+            char escaped = getEscapedChar(ch);
+            if (escaped == 0) {
+                if (strict) {
+                    throw new JSONParseException(
+                        stream.getPointer(),
+                        "Invalid escape sequence '\\" + ch + "'");
+                }
+                escaped = ch;
+            }
+            if (buf != null) {
+                buf.append(escaped);
+            }
+        }
+    }
+
+    /**
+     * Reads four hexadecimal digits of a "&#92;uXXXX" escape sequence. The
+     * stream should be positioned just after the 'u' character. In the
+     * lenient mode a malformed sequence is copied as is (without the back
+     * slash).
+     */
+    private static void readUnicodeEscape(
+        CharStream stream,
+        StringBuilder buf,
+        boolean strict) throws JSONParseException {
+        int mark = 0;
+        if (buf != null) {
+            mark = buf.length();
+            buf.append('u');
+        }
+        int value = 0;
+        int i = 0;
+        for (; i < 4 && !stream.isTerminated(); i++) {
+            char ch = stream.getChar();
+            if (!isHex(ch)) {
+                break;
+            }
+            value = (value << 4) | getHexValue(ch);
+            stream.incPos();
+            if (buf != null) {
+                buf.append(ch);
+            }
+        }
+        if (i == 4) {
+            if (buf != null) {
+                buf.setLength(mark);
+                buf.append((char) value);
+            }
+        } else if (strict) {
+            throw new JSONParseException(
+                stream.getPointer(),
+                "Invalid unicode escape sequence");
+        }
+    }
+
     private IJSONListener fListener;
 
+    private final JSONLiteral fLiteral = new JSONLiteral();
+
+    /**
+     * This buffer is re-used to read all property names.
+     */
+    private final StringBuilder fNameBuf = new StringBuilder();
+
+    /**
+     * This matcher accepts spaces defined by the {@link #isSpace(char)}
+     * method.
+     */
+    private final ICharMatcher fSpaceMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isSpace(ch);
+        }
+    };
+
     private CharStream fStream;
 
+    /**
+     * The pool of streams used to parse strings. Streams of strict parsers
+     * track lines and columns to report positions of errors.
+     */
+    private final CharStreamPool fStreamPool;
+
+    private final boolean fStrict;
+
+    /**
+     * The table used to get canonical property names; it can be
+     * <code>null</code>.
+     */
+    private JSONSymbolTable fSymbolTable;
+
+    /**
+     * This buffer is re-used to read all values given to typed listeners.
+     */
+    private final StringBuilder fValueBuf = new StringBuilder();
+
+    /**
+     * The typed listener or <code>null</code> if the current listener does
+     * not implement the {@link IJSONValueListener} interface.
+     */
+    private IJSONValueListener fValueListener;
+
+    /**
+     * This matcher accepts all characters terminating non-quoted values.
+     */
+    private final ICharMatcher fValueMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isValueDelimiter(ch) || isSpace(ch);
+        }
+    };
+
+    public JSONParser() {
+        this(null, false);
+    }
+
+    /**
+     * @param strict if this flag is <code>true</code> then this parser
+     *        accepts only texts conforming to RFC 8259
+     */
+    public JSONParser(boolean strict) {
+        this(null, strict);
+    }
+
+    /**
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; the same table can be shared by multiple
+     *        parsers; if this parameter is <code>null</code> then a new
+     *        string is created for each property name
+     */
+    public JSONParser(JSONSymbolTable symbolTable) {
+        this(symbolTable, false);
+    }
+
+    /**
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; it can be <code>null</code>
+     * @param strict if this flag is <code>true</code> then this parser
+     *        accepts only texts conforming to RFC 8259
+     */
+    public JSONParser(JSONSymbolTable symbolTable, boolean strict) {
+        fSymbolTable = symbolTable;
+        fStrict = strict;
+        fStreamPool = new CharStreamPool(strict);
+    }
+
     protected char getQuot(char c) {
         return c == '\'' || c == '"' ? c : 0;
     }
 
+    /**
+     * Returns the table used to get canonical property names.
+     * 
+     * @return the symbol table or <code>null</code> if property names are
+     *         not canonicalized
+     */
+    public JSONSymbolTable getSymbolTable() {
+        return fSymbolTable;
+    }
+
     protected boolean isSpace(char ch) {
-        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+        return isSpaceChar(ch);
+    }
+
+    /**
+     * Returns <code>true</code> if this parser accepts only texts conforming
+     * to RFC 8259.
+     * 
+     * @return <code>true</code> if this parser is in the strict mode
+     */
+    public boolean isStrict() {
+        return fStrict;
+    }
+
+    private JSONParseException newError(String expected) {
+        String found = fStream.isTerminated()
+            ? "the end of the stream"
+            : "'" + fStream.getChar() + "'";
+        return new JSONParseException(fStream.getPointer(), "Expected "
+            + expected
+            + " but found "
+            + found);
+    }
+
+    /**
+     * Notifies the typed listener about a value of the given type.
+     * 
+     * @param type the type of the value returned by the
+     *        {@link JSONLiteral#parse(CharSequence)} method
+     * @param buf the buffer containing the value
+     */
+    private void notifyBareValue(int type, StringBuilder buf) {
+        switch (type) {
+            case JSONLiteral.NULL:
+                fValueListener.onNull();
+                break;
+            case JSONLiteral.BOOLEAN:
+                fValueListener.onBoolean(fLiteral.getBoolean());
+                break;
+            case JSONLiteral.LONG:
+                fValueListener.onLong(fLiteral.getLong());
+                break;
+            case JSONLiteral.DOUBLE:
+                fValueListener.onDouble(fLiteral.getDouble());
+                break;
+            case JSONLiteral.NUMBER:
+                fValueListener.onNumber(buf);
+                break;
+            default:
+                fValueListener.onString(buf);
+                break;
+        }
+    }
+
+    /**
+     * Parses the given stream. In the lenient mode all characters before the
+     * first object are skipped. In the strict mode the stream should contain
+     * exactly one JSON value surrounded by optional spaces.
+     * 
+     * @param stream the stream to parse
+     * @param listener the listener notified about parsed elements
+     * @throws JSONParseException if the text is not valid in the strict mode
+     */
+    public void parse(CharStream stream, IJSONListener listener)
+        throws JSONParseException {
+        fListener = listener;
+        fValueListener = listener instanceof IJSONValueListener
+            ? (IJSONValueListener) listener
+            : null;
+        fStream = stream;
+        try {
+            if (fStrict) {
+                skipStrictToken();
+                skipSpaces();
+                if (!fStream.isTerminated()) {
+                    throw newError("the end of the stream");
+                }
+            } else {
+                fStream.skipUntil('{', '\0');
+                skipObject();
+            }
+        } finally {
+            fListener = null;
+            fValueListener = null;
+        }
+    }
+
+    public void parse(String str, IJSONListener listener)
+        throws JSONParseException {
+        CharStream stream = fStreamPool.newStream(str);
+        try {
+            parse(stream, listener);
+        } finally {
+            fStreamPool.release(stream);
+        }
     }
 
-    public void parse(CharStream stream, IJSONListener listener) {
+    /**
+     * Parses all top-level values (documents) from the given stream: objects,
+     * arrays and scalars separated by spaces (newline-delimited JSON) or
+     * simply concatenated. If the listener implements the
+     * {@link IJSONDocumentListener} interface then it is notified about the
+     * boundaries of each document. In the lenient mode stray delimiters
+     * between documents (like commas or closing brackets) are skipped. This
+     * method keeps only the characters of the current document in memory, so
+     * the same parser and stream can be used to read an unlimited number of
+     * records.
+     * 
+     * @param stream the stream to parse
+     * @param listener the listener notified about parsed elements
+     * @return the number of parsed documents
+     * @throws JSONParseException if the text is not valid in the strict mode
+     */
+    public int parseStream(CharStream stream, IJSONListener listener)
+        throws JSONParseException {
         fListener = listener;
+        fValueListener = listener instanceof IJSONValueListener
+            ? (IJSONValueListener) listener
+            : null;
+        IJSONDocumentListener documentListener = null;
+        if (listener instanceof IJSONDocumentListener) {
+            documentListener = (IJSONDocumentListener) listener;
+        }
         fStream = stream;
-        for (char ch = fStream.getChar(); ch != 0
-            && (ch = fStream.getChar()) != '{'; fStream.incPos()) {
+        int count = 0;
+        try {
+            while (skipDocumentSeparators()) {
+                if (documentListener != null) {
+                    documentListener.beginDocument(count);
+                }
+                if (fStrict) {
+                    skipStrictToken();
+                } else {
+                    skipToken();
+                }
+                if (documentListener != null) {
+                    documentListener.endDocument(count);
+                }
+                count++;
+            }
+        } finally {
+            fListener = null;
+            fValueListener = null;
         }
-        skipObject();
-        fListener = null;
+        return count;
     }
 
-    public void parse(String str, IJSONListener listener) {
-        CharStream stream = new CharStream(str);
-        parse(stream, listener);
+    public int parseStream(String str, IJSONListener listener)
+        throws JSONParseException {
+        CharStream stream = fStreamPool.newStream(str);
+        try {
+            return parseStream(stream, listener);
+        } finally {
+            fStreamPool.release(stream);
+        }
+    }
+
+    /**
+     * Reads a property name. If this parser has a symbol table then the
+     * returned name is a canonical instance from this table.
+     * 
+     * @return the name of the property
+     */
+    private String readPropertyName() {
+        skipSpaces();
+        StringBuilder buf = fNameBuf;
+        buf.setLength(0);
+        if (fStrict) {
+            if (fStream.getChar() != '"' || fStream.isTerminated()) {
+                throw newError("a property name");
+            }
+            readQuoted(fStream, '"', buf, true);
+        } else if (!readQuot(buf)) {
+            fStream.readUntil(fValueMatcher, buf);
+        }
+        return fSymbolTable != null ? fSymbolTable.getSymbol(buf) : buf
+            .toString();
+    }
+
+    /**
+     * Reads a quoted value and appends it to the given buffer.
+     * 
+     * @param buf the buffer for the value
+     * @return <code>true</code> if the current character is a quote and a
+     *         value was read
+     */
+    private boolean readQuot(StringBuilder buf) {
+        char ch = fStream.getChar();
+        if (ch <= 0) {
+            return false;
+        }
+        char quot = getQuot(ch);
+        if (quot == 0) {
+            return false;
+        }
+        readQuoted(fStream, quot, buf);
+        return true;
     }
 
     private boolean skipArray() {
@@ -79,6 +635,29 @@ public class JSONParser {
         return true;
     }
 
+    /**
+     * Skips spaces between top-level documents. In the lenient mode all
+     * delimiters which can not start a new document are skipped as well.
+     * 
+     * @return <code>true</code> if the stream contains one more document
+     */
+    private boolean skipDocumentSeparators() {
+        while (true) {
+            skipSpaces();
+            if (fStream.isTerminated()) {
+                return false;
+            }
+            char ch = fStream.getChar();
+            if (fStrict
+                || ch == '{'
+                || ch == '['
+                || !fValueMatcher.match(ch)) {
+                return true;
+            }
+            fStream.incPos();
+        }
+    }
+
     private boolean skipObject() {
         skipSpaces();
         char ch = fStream.getChar();
@@ -98,7 +677,7 @@ public class JSONParser {
                 break;
             }
 
-            String property = skipValue();
+            String property = readPropertyName();
             if (property == null || property.length() == 0) {
                 break;
             }
@@ -125,58 +704,103 @@ public class JSONParser {
         return true;
     }
 
-    private String skipQuot() {
-        char ch = fStream.getChar();
-        if (ch <= 0) {
-            return null;
-        }
-        char quot = getQuot(ch);
-        if (quot == 0) {
-            return null;
-        }
-        StringBuffer buf = new StringBuffer();
-        boolean escaped = false;
-        for (fStream.incPos(); quot > 0 && (ch = fStream.getChar()) > 0; fStream
-            .incPos()) {
-            if (escaped) {
-                switch (ch) {
-                    case 'n':
-                        buf.append('\n');
-                        break;
-                    case 'r':
-                        buf.append('\r');
-                        break;
-                    case 't':
-                        buf.append('\t');
-                        break;
-                    case 'f':
-                        buf.append('\f');
-                        break;
-                    default:
-                        buf.append(ch);
-                        break;
+    private boolean skipSpaces() {
+        return fStream.skipWhile(fSpaceMatcher) > 0;
+    }
+
+    private void skipStrictArray() {
+        fStream.incPos();
+        fListener.beginArray();
+        skipSpaces();
+        if (fStream.getChar() == ']' && !fStream.isTerminated()) {
+            fStream.incPos();
+        } else {
+            while (true) {
+                fListener.beginArrayElement();
+                skipStrictToken();
+                fListener.endArrayElement();
+                skipSpaces();
+                char ch = fStream.isTerminated() ? 0 : fStream.getChar();
+                if (ch == ',') {
+                    fStream.incPos();
+                } else if (ch == ']') {
+                    fStream.incPos();
+                    break;
+                } else {
+                    throw newError("',' or ']'");
                 }
-                escaped = false;
-                continue;
             }
-            escaped = ch == '\\';
-            if (escaped) {
-                continue;
-            }
-            if (quot == ch) {
+        }
+        fListener.endArray();
+    }
+
+    private void skipStrictObject() {
+        fStream.incPos();
+        fListener.beginObject();
+        skipSpaces();
+        if (fStream.getChar() == '}' && !fStream.isTerminated()) {
+            fStream.incPos();
+        } else {
+            while (true) {
+                String property = readPropertyName();
+                skipSpaces();
+                if (fStream.getChar() != ':' || fStream.isTerminated()) {
+                    throw newError("':'");
+                }
                 fStream.incPos();
-                break;
+                fListener.beginObjectProperty(property);
+                skipStrictToken();
+                fListener.endObjectProperty(property);
+                skipSpaces();
+                char ch = fStream.isTerminated() ? 0 : fStream.getChar();
+                if (ch == ',') {
+                    fStream.incPos();
+                } else if (ch == '}') {
+                    fStream.incPos();
+                    break;
+                } else {
+                    throw newError("',' or '}'");
+                }
             }
-            buf.append(ch);
         }
-        return buf.toString();
+        fListener.endObject();
     }
 
-    private boolean skipSpaces() {
-        int i;
-        for (i = 0; isSpace(fStream.getChar()); fStream.incPos(), i++) {
+    /**
+     * Reads one value in the strict mode: an object, an array, a string, a
+     * number, a boolean or <code>null</code>.
+     */
+    private void skipStrictToken() {
+        skipSpaces();
+        if (fStream.isTerminated()) {
+            throw newError("a value");
+        }
+        char ch = fStream.getChar();
+        if (ch == '{') {
+            skipStrictObject();
+        } else if (ch == '[') {
+            skipStrictArray();
+        } else {
+            StringBuilder buf = fValueBuf;
+            buf.setLength(0);
+            int type = JSONLiteral.STRING;
+            if (ch == '"') {
+                readQuoted(fStream, '"', buf, true);
+            } else {
+                fStream.readUntil(fValueMatcher, buf);
+                type = fLiteral.parse(buf);
+                if (type == JSONLiteral.STRING) {
+                    throw new JSONParseException(
+                        fStream.getPointer(),
+                        "Invalid value '" + buf + "'");
+                }
+            }
+            if (fValueListener != null) {
+                notifyBareValue(type, buf);
+            } else {
+                fListener.onValue(buf.toString());
+            }
         }
-        return i > 0;
     }
 
     private boolean skipToken() {
@@ -184,35 +808,44 @@ public class JSONParser {
         skipSpaces();
         if (!(result = skipObject())) {
             if (!(result = skipArray())) {
-                String value = skipValue();
-                if (value != null) {
-                    fListener.onValue(value);
-                    result = true;
+                if (fValueListener != null) {
+                    result = skipTypedValue();
+                } else {
+                    String value = skipValue();
+                    if (value != null) {
+                        fListener.onValue(value);
+                        result = true;
+                    }
                 }
             }
         }
         return result;
     }
 
+    /**
+     * Reads a value and notifies the typed listener about it.
+     * 
+     * @return <code>true</code>
+     */
+    private boolean skipTypedValue() {
+        skipSpaces();
+        StringBuilder buf = fValueBuf;
+        buf.setLength(0);
+        if (readQuot(buf)) {
+            fValueListener.onString(buf);
+        } else {
+            fStream.readUntil(fValueMatcher, buf);
+            notifyBareValue(fLiteral.parse(buf), buf);
+        }
+        return true;
+    }
+
     private String skipValue() {
         skipSpaces();
-        String result = skipQuot();
-        if (result != null) {
-            return result;
-        }
-        StringBuffer buf = new StringBuffer();
-        char ch;
-        for (; (ch = fStream.getChar()) > 0; fStream.incPos()) {
-            if (isSpace(ch)
-                || ch == '{'
-                || ch == '}'
-                || ch == '['
-                || ch == ']'
-                || ch == ':'
-                || ch == ',') {
-                break;
-            }
-            buf.append(ch);
+        StringBuilder buf = fValueBuf;
+        buf.setLength(0);
+        if (!readQuot(buf)) {
+            fStream.readUntil(fValueMatcher, buf);
         }
         return buf.toString();
     }
@@ -0,0 +1,609 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import org.ubimix.commons.parsers.CharStream.Pointer;
+import org.ubimix.commons.parsers.CharStreamLimitException;
+
+/**
+ * This is an incremental (push) JSON parser. The input is given to the
+ * {@link #feed(char[], int, int)} method fragment by fragment as it arrives;
+ * the parser notifies the listener about each element as soon as it is
+ * complete and keeps its state between fragments. Only the characters of the
+ * current property name or value are buffered, so this parser never blocks
+ * and never keeps the whole document in memory; tokens longer than the
+ * maximal token length are rejected with a {@link CharStreamLimitException}.
+ * The
+ * {@link #endOfInput()} method should be called when all fragments are given
+ * to the parser; after that the parser can be used for a new input.
+ * <p>
+ * This parser accepts the same lenient syntax as the {@link JSONParser} and
+ * it reads all top-level values like the
+ * {@link JSONParser#parseStream(org.ubimix.commons.parsers.CharStream, IJSONListener)}
+ * method. Listeners implementing the {@link IJSONValueListener} and
+ * {@link IJSONDocumentListener} interfaces receive typed values and
+ * boundaries of documents.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class JSONPushParser {
+
+    /**
+     * The default maximal length of one property name or value in
+     * characters.
+     */
+    public static final int DEFAULT_MAX_TOKEN_LENGTH = 1 << 24;
+
+    /**
+     * A back slash was read in a quoted value.
+     */
+    private static final int LEX_ESCAPE = 1;
+
+    /**
+     * The parser is between tokens.
+     */
+    private static final int LEX_NONE = 0;
+
+    /**
+     * The parser reads a non-quoted value or property name.
+     */
+    private static final int LEX_PLAIN = 2;
+
+    /**
+     * The parser reads a quoted value or property name.
+     */
+    private static final int LEX_QUOTED = 3;
+
+    /**
+     * The parser reads hexadecimal digits of a "&#92;uXXXX" sequence.
+     */
+    private static final int LEX_UNICODE = 4;
+
+    /**
+     * The parser is inside of an array.
+     */
+    private static final int STATE_ARRAY = 1;
+
+    /**
+     * The parser is inside of an object and a property name was read; the
+     * next character should be a colon.
+     */
+    private static final int STATE_OBJECT_COLON = 2;
+
+    /**
+     * The parser is inside of an object and the next token is a property
+     * name.
+     */
+    private static final int STATE_OBJECT_NAME = 3;
+
+    /**
+     * The parser is inside of an object and the next token is a property
+     * value.
+     */
+    private static final int STATE_OBJECT_VALUE = 4;
+
+    /**
+     * The number of opened objects and arrays.
+     */
+    private int fDepth;
+
+    /**
+     * The listener notified about boundaries of documents or
+     * <code>null</code>.
+     */
+    private final IJSONDocumentListener fDocumentListener;
+
+    /**
+     * The number of documents read since the beginning of the input.
+     */
+    private int fDocuments;
+
+    /**
+     * The position of the first character of the current fragment in the
+     * fragment array.
+     */
+    private int fFragmentOffset;
+
+    /**
+     * The number of characters given to this parser since the beginning of
+     * the input before the current fragment.
+     */
+    private int fInputPos;
+
+    /**
+     * The current lexical state; it is one of the <code>LEX_XXX</code>
+     * constants.
+     */
+    private int fLexState = LEX_NONE;
+
+    private final IJSONListener fListener;
+
+    private final JSONLiteral fLiteral = new JSONLiteral();
+
+    private final int fMaxTokenLength;
+
+    /**
+     * Names of properties for each opened object.
+     */
+    private String[] fNames = new String[16];
+
+    /**
+     * The quote of the current quoted token.
+     */
+    private char fQuot;
+
+    /**
+     * Parsing states for each opened object and array.
+     */
+    private int[] fStates = new int[16];
+
+    private final JSONSymbolTable fSymbolTable;
+
+    /**
+     * Characters of the current token.
+     */
+    private final StringBuilder fText = new StringBuilder();
+
+    /**
+     * The number of hexadecimal digits read in the current "&#92;uXXXX"
+     * sequence.
+     */
+    private int fUnicodeDigits;
+
+    /**
+     * The position in the text buffer of the current "&#92;uXXXX" sequence.
+     */
+    private int fUnicodeMark;
+
+    private int fUnicodeValue;
+
+    /**
+     * The typed listener or <code>null</code>.
+     */
+    private final IJSONValueListener fValueListener;
+
+    /**
+     * @param listener the listener notified about parsed elements
+     */
+    public JSONPushParser(IJSONListener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * @param listener the listener notified about parsed elements
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; it can be <code>null</code>
+     */
+    public JSONPushParser(IJSONListener listener, JSONSymbolTable symbolTable) {
+        this(listener, symbolTable, DEFAULT_MAX_TOKEN_LENGTH);
+    }
+
+    /**
+     * @param listener the listener notified about parsed elements
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; it can be <code>null</code>
+     * @param maxTokenLength the maximal length of one property name or value
+     *        in characters
+     */
+    public JSONPushParser(
+        IJSONListener listener,
+        JSONSymbolTable symbolTable,
+        int maxTokenLength) {
+        if (maxTokenLength <= 0) {
+            throw new IllegalArgumentException("Bad maximal token length: "
+                + maxTokenLength);
+        }
+        fListener = listener;
+        fValueListener = listener instanceof IJSONValueListener
+            ? (IJSONValueListener) listener
+            : null;
+        fDocumentListener = listener instanceof IJSONDocumentListener
+            ? (IJSONDocumentListener) listener
+            : null;
+        fSymbolTable = symbolTable;
+        fMaxTokenLength = maxTokenLength;
+    }
+
+    /**
+     * Notifies about the beginning of a new value in the current context.
+     */
+    private void beginValue() {
+        if (fDepth == 0) {
+            if (fDocumentListener != null) {
+                fDocumentListener.beginDocument(fDocuments);
+            }
+        } else if (fStates[fDepth - 1] == STATE_ARRAY) {
+            fListener.beginArrayElement();
+        }
+    }
+
+    /**
+     * Checks that the current token is not longer than the maximal token
+     * length.
+     * 
+     * @param pos the position of the next character in the fragment array
+     * @throws CharStreamLimitException if the token is too long
+     */
+    private void checkTokenLength(int pos) throws CharStreamLimitException {
+        if (fText.length() > fMaxTokenLength) {
+            throw new CharStreamLimitException(new Pointer(fInputPos
+                + pos
+                - fFragmentOffset, -1, -1), fMaxTokenLength);
+        }
+    }
+
+    /**
+     * Closes the current object or array.
+     */
+    private void close() {
+        if (fStates[fDepth - 1] == STATE_ARRAY) {
+            fListener.endArray();
+        } else {
+            fListener.endObject();
+        }
+        fNames[--fDepth] = null;
+        endValue();
+    }
+
+    /**
+     * Notifies the listener about the current token.
+     * 
+     * @param quoted this flag is <code>true</code> if the token was quoted
+     */
+    private void completeToken(boolean quoted) {
+        fLexState = LEX_NONE;
+        int top = fDepth - 1;
+        if (top >= 0 && fStates[top] == STATE_OBJECT_NAME) {
+            String name = fSymbolTable != null ? fSymbolTable
+                .getSymbol(fText) : fText.toString();
+            fNames[top] = name;
+            fStates[top] = STATE_OBJECT_COLON;
+            fListener.beginObjectProperty(name);
+        } else {
+            beginValue();
+            notifyValue(quoted);
+            endValue();
+        }
+    }
+
+    /**
+     * Notifies that all fragments of the input were given to this parser.
+     * The current token is completed and all opened objects and arrays are
+     * closed. After this call the parser can be used to parse a new input.
+     */
+    public void endOfInput() {
+        if (fLexState == LEX_PLAIN) {
+            completeToken(false);
+        } else if (fLexState != LEX_NONE) {
+            completeToken(true);
+        }
+        while (fDepth > 0) {
+            int state = fStates[fDepth - 1];
+            if (state == STATE_OBJECT_COLON) {
+                onMissingValue();
+            } else if (state == STATE_OBJECT_VALUE) {
+                onEmptyValue();
+            }
+            close();
+        }
+        fText.setLength(0);
+        fDocuments = 0;
+        fInputPos = 0;
+    }
+
+    /**
+     * Notifies about the end of a value in the current context.
+     */
+    private void endValue() {
+        if (fDepth == 0) {
+            if (fDocumentListener != null) {
+                fDocumentListener.endDocument(fDocuments);
+            }
+            fDocuments++;
+            return;
+        }
+        int top = fDepth - 1;
+        if (fStates[top] == STATE_ARRAY) {
+            fListener.endArrayElement();
+        } else {
+            fListener.endObjectProperty(fNames[top]);
+            fStates[top] = STATE_OBJECT_NAME;
+        }
+    }
+
+    /**
+     * Parses the next fragment of the input.
+     * 
+     * @param buf the array containing the fragment
+     * @param offset the position of the first character of the fragment
+     * @param len the number of characters in the fragment
+     * @throws CharStreamLimitException if a property name or a value is
+     *         longer than the maximal token length
+     */
+    public void feed(char[] buf, int offset, int len)
+        throws CharStreamLimitException {
+        fFragmentOffset = offset;
+        int end = offset + len;
+        int pos = offset;
+        while (pos < end) {
+            switch (fLexState) {
+                case LEX_QUOTED:
+                    pos = readQuoted(buf, pos, end);
+                    break;
+                case LEX_ESCAPE:
+                    pos = readEscape(buf[pos], pos);
+                    break;
+                case LEX_UNICODE:
+                    pos = readUnicode(buf, pos, end);
+                    break;
+                case LEX_PLAIN:
+                    pos = readPlain(buf, pos, end);
+                    break;
+                default:
+                    pos = readStructure(buf[pos], pos);
+                    break;
+            }
+        }
+        fInputPos += len;
+    }
+
+    /**
+     * Parses the next fragment of the input.
+     * 
+     * @param str the fragment to parse
+     * @throws CharStreamLimitException if a property name or a value is
+     *         longer than the maximal token length
+     */
+    public void feed(String str) throws CharStreamLimitException {
+        char[] buf = new char[Math.min(str.length(), 1024)];
+        for (int i = 0; i < str.length(); i += buf.length) {
+            int len = Math.min(buf.length, str.length() - i);
+            str.getChars(i, i + len, buf, 0);
+            feed(buf, 0, len);
+        }
+    }
+
+    /**
+     * Returns the number of opened objects and arrays.
+     * 
+     * @return the number of opened objects and arrays
+     */
+    public int getDepth() {
+        return fDepth;
+    }
+
+    /**
+     * Returns the listener notified by this parser.
+     * 
+     * @return the listener notified by this parser
+     */
+    public IJSONListener getListener() {
+        return fListener;
+    }
+
+    private void notifyValue(boolean quoted) {
+        if (fValueListener == null) {
+            fListener.onValue(fText.toString());
+            return;
+        }
+        if (quoted) {
+            fValueListener.onString(fText);
+            return;
+        }
+        switch (fLiteral.parse(fText)) {
+            case JSONLiteral.NULL:
+                fValueListener.onNull();
+                break;
+            case JSONLiteral.BOOLEAN:
+                fValueListener.onBoolean(fLiteral.getBoolean());
+                break;
+            case JSONLiteral.LONG:
+                fValueListener.onLong(fLiteral.getLong());
+                break;
+            case JSONLiteral.DOUBLE:
+                fValueListener.onDouble(fLiteral.getDouble());
+                break;
+            case JSONLiteral.NUMBER:
+                fValueListener.onNumber(fText);
+                break;
+            default:
+                fValueListener.onString(fText);
+                break;
+        }
+    }
+
+    /**
+     * Notifies about an empty value of a property (a colon without a value).
+     */
+    private void onEmptyValue() {
+        fText.setLength(0);
+        notifyValue(false);
+        endValue();
+    }
+
+    /**
+     * Notifies about a property without a colon and a value.
+     */
+    private void onMissingValue() {
+        fListener.onValue(null);
+        endValue();
+    }
+
+    /**
+     * Opens a new object or array.
+     * 
+     * @param state the initial state of the new container
+     */
+    private void open(int state) {
+        beginValue();
+        if (fDepth == fStates.length) {
+            int[] states = new int[fStates.length * 2];
+            System.arraycopy(fStates, 0, states, 0, fDepth);
+            fStates = states;
+            String[] names = new String[fStates.length];
+            System.arraycopy(fNames, 0, names, 0, fDepth);
+            fNames = names;
+        }
+        fStates[fDepth++] = state;
+        if (state == STATE_ARRAY) {
+            fListener.beginArray();
+        } else {
+            fListener.beginObject();
+        }
+    }
+
+    private int readEscape(char ch, int pos) {
+        if (ch == 'u') {
+            fUnicodeMark = fText.length();
+            fUnicodeDigits = 0;
+            fUnicodeValue = 0;
+            fText.append('u');
+            fLexState = LEX_UNICODE;
+        } else {
+            char escaped = JSONParser.getEscapedChar(ch);
+            fText.append(escaped != 0 ? escaped : ch);
+            fLexState = LEX_QUOTED;
+        }
+        return pos + 1;
+    }
+
+    private int readPlain(char[] buf, int pos, int end) {
+        int start = pos;
+        while (pos < end && !JSONParser.isValueDelimiter(buf[pos])) {
+            pos++;
+        }
+        fText.append(buf, start, pos - start);
+        checkTokenLength(pos);
+        if (pos < end) {
+            completeToken(false);
+        }
+        return pos;
+    }
+
+    private int readQuoted(char[] buf, int pos, int end) {
+        int start = pos;
+        char quot = fQuot;
+        while (pos < end && buf[pos] != quot && buf[pos] != '\\') {
+            pos++;
+        }
+        fText.append(buf, start, pos - start);
+        checkTokenLength(pos);
+        if (pos < end) {
+            if (buf[pos] == quot) {
+                completeToken(true);
+            } else {
+                fLexState = LEX_ESCAPE;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Processes a character between tokens.
+     * 
+     * @param ch the character to process
+     * @param pos the position of the character
+     * @return the position of the next character to process; it is the same
+     *         position if the character should be processed again in a new
+     *         state
+     */
+    private int readStructure(char ch, int pos) {
+        if (JSONParser.isSpaceChar(ch)) {
+            return pos + 1;
+        }
+        int state = fDepth > 0 ? fStates[fDepth - 1] : 0;
+        switch (state) {
+            case STATE_OBJECT_COLON:
+                if (ch == ':') {
+                    fStates[fDepth - 1] = STATE_OBJECT_VALUE;
+                    return pos + 1;
+                }
+                onMissingValue();
+                return pos;
+            case STATE_OBJECT_VALUE:
+                if (JSONParser.isValueDelimiter(ch) && ch != '{' && ch != '[') {
+                    onEmptyValue();
+                    return pos;
+                }
+                break;
+            case STATE_OBJECT_NAME:
+                if (ch == '}') {
+                    close();
+                    return pos + 1;
+                }
+                if (JSONParser.isValueDelimiter(ch)) {
+                    // Separators and unexpected characters are skipped
+                    return pos + 1;
+                }
+                return startToken(ch, pos);
+            case STATE_ARRAY:
+                if (ch == ']') {
+                    close();
+                    return pos + 1;
+                }
+                break;
+        }
+        if (ch == '{') {
+            open(STATE_OBJECT_NAME);
+        } else if (ch == '[') {
+            open(STATE_ARRAY);
+        } else if (JSONParser.isValueDelimiter(ch)) {
+            // Separators and unexpected characters are skipped
+        } else {
+            return startToken(ch, pos);
+        }
+        return pos + 1;
+    }
+
+    private int readUnicode(char[] buf, int pos, int end) {
+        while (pos < end && fUnicodeDigits < 4) {
+            char ch = buf[pos];
+            if (!JSONParser.isHex(ch)) {
+                // A malformed sequence is kept as is
+                fLexState = LEX_QUOTED;
+                return pos;
+            }
+            fUnicodeValue = (fUnicodeValue << 4) | JSONParser.getHexValue(ch);
+            fUnicodeDigits++;
+            fText.append(ch);
+            pos++;
+        }
+        if (fUnicodeDigits == 4) {
+            fText.setLength(fUnicodeMark);
+            fText.append((char) fUnicodeValue);
+            fLexState = LEX_QUOTED;
+        }
+        return pos;
+    }
+
+    /**
+     * Starts a new property name or a value.
+     */
+    private int startToken(char ch, int pos) {
+        fText.setLength(0);
+        if (ch == '\'' || ch == '"') {
+            fQuot = ch;
+            fLexState = LEX_QUOTED;
+            return pos + 1;
+        }
+        fLexState = LEX_PLAIN;
+        return pos;
+    }
+
+}
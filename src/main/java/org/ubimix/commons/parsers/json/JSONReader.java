@@ -0,0 +1,447 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.Pointer;
+
+/**
+ * This is a pull reader of JSON documents. Each call of the
+ * {@link #nextToken()} method reads the next token from the underlying
+ * {@link CharStream} and returns its type; the value of the token is
+ * available using the {@link #getString()}, {@link #getText()},
+ * {@link #getLong()}, {@link #getDouble()} and {@link #getBoolean()} methods.
+ * The whole content of objects and arrays can be skipped using the
+ * {@link #skipChildren()} method.
+ * <p>
+ * This reader accepts the same lenient syntax as the {@link JSONParser}:
+ * strings can be quoted with single or double quotes or not quoted at all,
+ * properties without values are reported as <code>null</code> values and
+ * unclosed objects and arrays are closed at the end of the stream.
+ * </p>
+ * Example:
+ * 
+ * <pre>
+ * JSONReader reader = new JSONReader(&quot;{a:1, b:[true, 'x']}&quot;);
+ * reader.nextToken(); // BEGIN_OBJECT
+ * reader.nextToken(); // PROPERTY, reader.getString() returns &quot;a&quot;
+ * reader.nextToken(); // LONG, reader.getLong() returns 1
+ * reader.nextToken(); // PROPERTY, reader.getString() returns &quot;b&quot;
+ * reader.nextToken(); // BEGIN_ARRAY
+ * reader.skipChildren(); // the current token is END_ARRAY
+ * reader.nextToken(); // END_OBJECT
+ * reader.nextToken(); // END
+ * </pre>
+ * 
+ * @author kotelnikov
+ */
+public class JSONReader {
+
+    /**
+     * Types of tokens returned by the {@link JSONReader#nextToken()} method.
+     */
+    public enum Token {
+        BEGIN_ARRAY,
+        BEGIN_OBJECT,
+        BOOLEAN,
+        DOUBLE,
+        END,
+        END_ARRAY,
+        END_OBJECT,
+        LONG,
+        NULL,
+        /**
+         * An integer out of the range of the <code>long</code> type; its
+         * value is available only as text.
+         */
+        NUMBER,
+        PROPERTY,
+        STRING
+    }
+
+    /**
+     * The reader is inside of an array.
+     */
+    private static final int STATE_ARRAY = 1;
+
+    /**
+     * The reader is inside of an object and the next token is a property
+     * name.
+     */
+    private static final int STATE_OBJECT_NAME = 2;
+
+    /**
+     * The reader is inside of an object and the next token is a property
+     * value.
+     */
+    private static final int STATE_OBJECT_VALUE = 3;
+
+    private static char getQuot(char c) {
+        return c == '\'' || c == '"' ? c : 0;
+    }
+
+    /**
+     * The number of opened objects and arrays.
+     */
+    private int fDepth;
+
+    private final JSONLiteral fLiteral = new JSONLiteral();
+
+    /**
+     * The value of the last property name; it is created on demand by the
+     * {@link #getString()} method.
+     */
+    private String fName;
+
+    /**
+     * This flag is <code>true</code> if the top-level value was already
+     * read.
+     */
+    private boolean fRootRead;
+
+    /**
+     * If this flag is <code>true</code> then values are skipped without
+     * copying their characters.
+     */
+    private boolean fSkipping;
+
+    /**
+     * Reading states for each opened object and array.
+     */
+    private int[] fStates = new int[16];
+
+    private final CharStream fStream;
+
+    private final JSONSymbolTable fSymbolTable;
+
+    /**
+     * The characters of the current value or property name.
+     */
+    private final StringBuilder fText = new StringBuilder();
+
+    private Token fToken;
+
+    /**
+     * @param stream the stream to read
+     */
+    public JSONReader(CharStream stream) {
+        this(stream, null);
+    }
+
+    /**
+     * @param stream the stream to read
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; it can be <code>null</code>
+     */
+    public JSONReader(CharStream stream, JSONSymbolTable symbolTable) {
+        fStream = stream;
+        fSymbolTable = symbolTable;
+    }
+
+    /**
+     * @param str the JSON document to read
+     */
+    public JSONReader(String str) {
+        this(new CharStream(str, false));
+    }
+
+    private IllegalStateException badToken(String expected) {
+        return new IllegalStateException("The current token is "
+            + fToken
+            + "; "
+            + expected
+            + " is expected.");
+    }
+
+    private Token beginValue() {
+        char ch = fStream.getChar();
+        if (ch == '{') {
+            fStream.incPos();
+            push(STATE_OBJECT_NAME);
+            return Token.BEGIN_OBJECT;
+        }
+        if (ch == '[') {
+            fStream.incPos();
+            push(STATE_ARRAY);
+            return Token.BEGIN_ARRAY;
+        }
+        fText.setLength(0);
+        char quot = getQuot(ch);
+        if (quot != 0) {
+            JSONParser.readQuoted(fStream, quot, fSkipping ? null : fText);
+            return Token.STRING;
+        }
+        if (fSkipping) {
+            fStream.skipUntil(JSONParser.VALUE_DELIMITER_MATCHER);
+            return Token.STRING;
+        }
+        fStream.readUntil(JSONParser.VALUE_DELIMITER_MATCHER, fText);
+        switch (fLiteral.parse(fText)) {
+            case JSONLiteral.NULL:
+                return Token.NULL;
+            case JSONLiteral.BOOLEAN:
+                return Token.BOOLEAN;
+            case JSONLiteral.LONG:
+                return Token.LONG;
+            case JSONLiteral.DOUBLE:
+                return Token.DOUBLE;
+            case JSONLiteral.NUMBER:
+                return fLiteral.isBigInteger() ? Token.NUMBER : Token.DOUBLE;
+            default:
+                return Token.STRING;
+        }
+    }
+
+    /**
+     * Returns the value of the current {@link Token#BOOLEAN} token.
+     * 
+     * @return the value of the current boolean token
+     * @throws IllegalStateException if the current token is not a boolean
+     */
+    public boolean getBoolean() {
+        if (fToken != Token.BOOLEAN) {
+            throw badToken("BOOLEAN");
+        }
+        return fLiteral.getBoolean();
+    }
+
+    /**
+     * Returns the number of objects and arrays containing the current token.
+     * 
+     * @return the number of opened objects and arrays
+     */
+    public int getDepth() {
+        return fDepth;
+    }
+
+    /**
+     * Returns the value of the current {@link Token#DOUBLE},
+     * {@link Token#LONG} or {@link Token#NUMBER} token. Values of big
+     * integers are rounded to the nearest double value.
+     * 
+     * @return the numeric value of the current token
+     * @throws IllegalStateException if the current token is not a number
+     */
+    public double getDouble() {
+        if (fToken == Token.DOUBLE) {
+            return fLiteral.getDouble();
+        }
+        if (fToken == Token.LONG) {
+            return fLiteral.getLong();
+        }
+        if (fToken == Token.NUMBER) {
+            return Double.parseDouble(fText.toString());
+        }
+        throw badToken("DOUBLE");
+    }
+
+    /**
+     * Returns the value of the current {@link Token#LONG} or
+     * {@link Token#DOUBLE} token. Double values are truncated.
+     * 
+     * @return the numeric value of the current token
+     * @throws IllegalStateException if the current token is not a number
+     */
+    public long getLong() {
+        if (fToken == Token.LONG) {
+            return fLiteral.getLong();
+        }
+        if (fToken == Token.DOUBLE) {
+            return (long) fLiteral.getDouble();
+        }
+        throw badToken("LONG");
+    }
+
+    /**
+     * Returns the position of the stream after the current token.
+     * 
+     * @return the position of the stream after the current token
+     */
+    public Pointer getPointer() {
+        return fStream.getPointer();
+    }
+
+    /**
+     * Returns the text of the current property name or value. For property
+     * names this method uses the symbol table (if it was defined).
+     * 
+     * @return the text of the current token or <code>null</code> if the
+     *         current token is not a property name or a value
+     */
+    public String getString() {
+        if (fToken == Token.PROPERTY) {
+            if (fName == null) {
+                fName = fSymbolTable != null
+                    ? fSymbolTable.getSymbol(fText)
+                    : fText.toString();
+            }
+            return fName;
+        }
+        return hasText() ? fText.toString() : null;
+    }
+
+    /**
+     * Returns the characters of the current property name or value. The
+     * returned sequence is re-used by this reader, so it is valid only until
+     * the next call of the {@link #nextToken()} method.
+     * 
+     * @return the characters of the current token or <code>null</code> if the
+     *         current token is not a property name or a value
+     */
+    public CharSequence getText() {
+        return fToken == Token.PROPERTY || hasText() ? fText : null;
+    }
+
+    /**
+     * Returns the type of the current token.
+     * 
+     * @return the type of the current token or <code>null</code> if the
+     *         {@link #nextToken()} method was not called yet
+     */
+    public Token getToken() {
+        return fToken;
+    }
+
+    private boolean hasText() {
+        return fToken == Token.STRING
+            || fToken == Token.LONG
+            || fToken == Token.DOUBLE
+            || fToken == Token.NUMBER
+            || fToken == Token.BOOLEAN
+            || fToken == Token.NULL;
+    }
+
+    /**
+     * Reads the next token.
+     * 
+     * @return the type of the read token; at the end of the document this
+     *         method returns {@link Token#END}
+     */
+    public Token nextToken() {
+        fName = null;
+        fToken = readToken();
+        return fToken;
+    }
+
+    private Token pop(Token token) {
+        fDepth--;
+        return token;
+    }
+
+    private void push(int state) {
+        if (fDepth == fStates.length) {
+            int[] states = new int[fStates.length * 2];
+            System.arraycopy(fStates, 0, states, 0, fDepth);
+            fStates = states;
+        }
+        fStates[fDepth++] = state;
+    }
+
+    private Token readToken() {
+        fStream.skipWhile(JSONParser.SPACE_MATCHER);
+        if (fDepth == 0) {
+            if (fRootRead || fStream.isTerminated()) {
+                return Token.END;
+            }
+            fRootRead = true;
+            return beginValue();
+        }
+        int top = fDepth - 1;
+        switch (fStates[top]) {
+            case STATE_OBJECT_VALUE:
+                fStates[top] = STATE_OBJECT_NAME;
+                if (fStream.getChar() != ':') {
+                    // A property without value
+                    fText.setLength(0);
+                    fLiteral.parse(fText);
+                    return Token.NULL;
+                }
+                fStream.incPos();
+                fStream.skipWhile(JSONParser.SPACE_MATCHER);
+                return beginValue();
+            case STATE_OBJECT_NAME:
+                while (true) {
+                    fStream.skipWhile(JSONParser.SPACE_MATCHER);
+                    if (fStream.isTerminated()) {
+                        return pop(Token.END_OBJECT);
+                    }
+                    char ch = fStream.getChar();
+                    if (ch == '}') {
+                        fStream.incPos();
+                        return pop(Token.END_OBJECT);
+                    }
+                    fText.setLength(0);
+                    char quot = getQuot(ch);
+                    if (quot != 0) {
+                        JSONParser.readQuoted(fStream, quot, fSkipping
+                            ? null
+                            : fText);
+                    } else if (fStream.readUntil(
+                        JSONParser.VALUE_DELIMITER_MATCHER,
+                        fText) == 0) {
+                        // Separators and unexpected characters are skipped
+                        fStream.incPos();
+                        continue;
+                    }
+                    fStates[top] = STATE_OBJECT_VALUE;
+                    return Token.PROPERTY;
+                }
+            default:
+                while (true) {
+                    fStream.skipWhile(JSONParser.SPACE_MATCHER);
+                    if (fStream.isTerminated()) {
+                        return pop(Token.END_ARRAY);
+                    }
+                    char ch = fStream.getChar();
+                    if (ch == ']') {
+                        fStream.incPos();
+                        return pop(Token.END_ARRAY);
+                    }
+                    if (ch == ',' || ch == ':' || ch == '}') {
+                        // Separators and unexpected characters are skipped
+                        fStream.incPos();
+                        continue;
+                    }
+                    return beginValue();
+                }
+        }
+    }
+
+    /**
+     * If the current token is {@link Token#BEGIN_OBJECT} or
+     * {@link Token#BEGIN_ARRAY} then this method skips the whole content of
+     * the object or array; after this call the current token is the
+     * corresponding {@link Token#END_OBJECT} or {@link Token#END_ARRAY}. For
+     * all other tokens this method does nothing. Skipped values are not
+     * copied and not parsed.
+     */
+    public void skipChildren() {
+        if (fToken != Token.BEGIN_OBJECT && fToken != Token.BEGIN_ARRAY) {
+            return;
+        }
+        int depth = fDepth - 1;
+        fSkipping = true;
+        try {
+            while (fDepth > depth) {
+                nextToken();
+            }
+        } finally {
+            fSkipping = false;
+        }
+    }
+
+}
@@ -16,65 +16,181 @@
  * ************************************************************************** */
 package org.ubimix.commons.parsers.json;
 
-import java.util.Stack;
-
 import org.ubimix.commons.parsers.json.IJSONListener;
 
 /**
+ * This listener serializes JSON events. Subclasses define where the output
+ * goes by implementing the {@link #print(String)} method; to avoid creation of
+ * new strings for each printed fragment they should also override the
+ * {@link #print(char)} and {@link #print(CharSequence, int, int)} methods.
+ * <p>
+ * By default this serializer produces a compact lenient form: all values are
+ * quoted with single quotes and property names are quoted only when it is
+ * required. In the strict mode the output conforms to RFC 8259: all strings
+ * and property names are quoted with double quotes, numbers, booleans and
+ * <code>null</code> values are not quoted and control characters are escaped
+ * using the <code>&#92;uXXXX</code> form.
+ * </p>
+ * <p>
+ * This serializer receives all values as strings, so the lenient output keeps
+ * the original text of parsed numbers and literals. The strict mode requires
+ * typed values: strict serializers should also implement the
+ * {@link IJSONValueListener} interface (see {@link StrictJSONWriter}).
+ * </p>
+ * 
  * @author kotelnikov
  */
 public abstract class JSONSerializer implements IJSONListener {
 
-    private StringBuffer fBuf = new StringBuffer();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Escape characters used in the lenient mode for the first 128
+     * characters. Zero means that the character is not escaped, the 'u'
+     * character means the "&#92;uXXXX" form. Spaces are escaped only in some
+     * positions, so they are marked by the space character.
+     */
+    private static final char[] LENIENT_ESCAPES = newEscapeTable(false);
 
-    private Stack<Integer> fStack = new Stack<Integer>();
+    /**
+     * Escape characters used in the strict mode for the first 128 characters.
+     */
+    private static final char[] STRICT_ESCAPES = newEscapeTable(true);
+
+    /**
+     * Returns <code>true</code> if the given property name should be quoted.
+     * This method accepts the same characters as the
+     * {@link #escape(String, boolean, StringBuffer)} method.
+     */
+    private static boolean isQuotingRequired(String str) {
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            switch (str.charAt(i)) {
+                case ' ':
+                case '\'':
+                case '\"':
+                case '\t':
+                case '\n':
+                case '\r':
+                case '\f':
+                case ':':
+                case ';':
+                case '+':
+                case '-':
+                case '/':
+                case '\\':
+                case '=':
+                case '!':
+                    return true;
+                default:
+                    if (str.charAt(i) < 0x0020) {
+                        return true;
+                    }
+            }
+        }
+        return false;
+    }
+
+    private static char[] newEscapeTable(boolean strict) {
+        char[] table = new char[128];
+        for (int i = 0; i < 0x20; i++) {
+            table[i] = 'u';
+        }
+        table['\t'] = 't';
+        table['\n'] = 'n';
+        table['\r'] = 'r';
+        table['\f'] = 'f';
+        table['"'] = '"';
+        if (strict) {
+            table['\b'] = 'b';
+            table['\\'] = '\\';
+        } else {
+            table['\''] = '\'';
+            table[' '] = ' ';
+        }
+        return table;
+    }
+
+    /**
+     * The number of opened objects and arrays
+     */
+    private int fDepth;
+
+    /**
+     * A buffer used to print long values
+     */
+    private final char[] fDigits = new char[20];
+
+    private final char[] fEscapes;
+
+    /**
+     * Numbers of already serialized elements or properties for each opened
+     * object and array
+     */
+    private int[] fStack = new int[16];
+
+    private final boolean fStrict;
 
     /**
      * 
      */
     public JSONSerializer() {
+        this(false);
+    }
+
+    /**
+     * @param strict if this flag is <code>true</code> then the serializer
+     *        produces RFC 8259 conforming output; subclasses using this mode
+     *        should implement the {@link IJSONValueListener} interface
+     */
+    protected JSONSerializer(boolean strict) {
+        fStrict = strict;
+        fEscapes = strict ? STRICT_ESCAPES : LENIENT_ESCAPES;
     }
 
     public void beginArray() {
-        print("[");
-        fStack.push(0);
+        print('[');
+        push();
     }
 
     public void beginArrayElement() {
         if (inc() > 0)
-            print(",");
+            print(',');
     }
 
     public void beginObject() {
-        print("{");
-        fStack.push(0);
+        print('{');
+        push();
     }
 
     public void beginObjectProperty(String property) {
         if (inc() > 0)
-            print(",");
-        fBuf.delete(0, fBuf.length());
-        if (escape(property, true, fBuf)) {
-            print("'");
-            print(fBuf.toString());
-            print("'");
+            print(',');
+        if (fStrict) {
+            print('"');
+            printEscaped(property, true);
+            print('"');
+        } else if (property != null && isQuotingRequired(property)) {
+            print('\'');
+            printEscaped(property, true);
+            print('\'');
         } else {
-            print(fBuf.toString());
+            printEscaped(property, true);
         }
-        print(":");
+        print(':');
     }
 
     public void endArray() {
-        print("]");
-        fStack.pop();
+        print(']');
+        fDepth--;
     }
 
     public void endArrayElement() {
     }
 
     public void endObject() {
-        print("}");
-        fStack.pop();
+        print('}');
+        fDepth--;
     }
 
     public void endObjectProperty(String property) {
@@ -159,26 +275,174 @@ public abstract class JSONSerializer implements IJSONListener {
     }
 
     private int inc() {
-        int idx = fStack.size() - 1;
-        int num = fStack.get(idx);
-        fStack.set(idx, num + 1);
-        return num;
+        return fDepth > 0 ? fStack[fDepth - 1]++ : 0;
+    }
+
+    /**
+     * Returns <code>true</code> if this serializer produces RFC 8259
+     * conforming output.
+     * 
+     * @return <code>true</code> if this serializer is in the strict mode
+     */
+    public boolean isStrict() {
+        return fStrict;
+    }
+
+    /**
+     * Prints a boolean value.
+     * 
+     * @param value the value to print
+     */
+    public void onBoolean(boolean value) {
+        if (fStrict) {
+            print(value ? "true" : "false");
+        } else {
+            onValue(value ? "true" : "false");
+        }
+    }
+
+    /**
+     * Prints the given value. In the strict mode infinite and NaN values are
+     * printed as <code>null</code> because they are not allowed by RFC 8259.
+     * 
+     * @param value the value to print
+     */
+    public void onDouble(double value) {
+        if (!fStrict) {
+            onValue(String.valueOf(value));
+        } else if (Double.isNaN(value) || Double.isInfinite(value)) {
+            print("null");
+        } else {
+            print(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Prints a long value.
+     * 
+     * @param value the value to print
+     */
+    public void onLong(long value) {
+        if (!fStrict) {
+            print('\'');
+        }
+        printLong(value);
+        if (!fStrict) {
+            print('\'');
+        }
+    }
+
+    /**
+     * Prints the <code>null</code> literal.
+     */
+    public void onNull() {
+        print("null");
+    }
+
+    /**
+     * Prints a number given by its text. In the strict mode the text is
+     * printed as is.
+     * 
+     * @param value the text of the number
+     */
+    public void onNumber(CharSequence value) {
+        if (fStrict) {
+            print(value, 0, value.length());
+        } else {
+            onValue(value.toString());
+        }
+    }
+
+    /**
+     * Prints a quoted string value.
+     * 
+     * @param value the value to print
+     */
+    public void onString(CharSequence value) {
+        char quot = fStrict ? '"' : '\'';
+        print(quot);
+        printEscaped(value, false);
+        print(quot);
     }
 
     public void onValue(String value) {
         if (value == null) {
             print("null");
         } else {
-            print("'");
-            fBuf.delete(0, fBuf.length());
-            escape(value, false, fBuf);
-            print(fBuf.toString());
-            print("'");
+            onString(value);
         }
     }
 
+    /**
+     * Prints one character. This method creates a new string for each call,
+     * so subclasses should override it.
+     * 
+     * @param ch the character to print
+     */
+    protected void print(char ch) {
+        print(String.valueOf(ch));
+    }
+
+    /**
+     * Prints a fragment of the given character sequence. This method creates
+     * a new string for each call, so subclasses should override it.
+     * 
+     * @param str the sequence containing characters to print
+     * @param start the index of the first character to print
+     * @param end the index after the last character to print
+     */
+    protected void print(CharSequence str, int start, int end) {
+        print(str.subSequence(start, end).toString());
+    }
+
     protected abstract void print(String string);
 
+    /**
+     * Escapes the given string and prints it. Characters which are not
+     * escaped are printed in bulk. In the lenient mode this method produces
+     * the same output as the {@link #escape(String, boolean, StringBuffer)}
+     * method.
+     * 
+     * @param str the string to print
+     * @param escapeSpace if this flag is <code>true</code> then all spaces
+     *        are escaped in the lenient mode; otherwise only the leading space
+     *        is escaped; this flag is ignored in the strict mode
+     */
+    protected void printEscaped(CharSequence str, boolean escapeSpace) {
+        if (str == null) {
+            return;
+        }
+        char[] escapes = fEscapes;
+        int len = str.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            char escaped = ch < 128 ? escapes[ch] : 0;
+            if (escaped == 0) {
+                continue;
+            }
+            if (escaped == ' ') {
+                if (i == 0 || escapeSpace) {
+                    printSegment(str, start, i);
+                    print('\\');
+                    start = i;
+                }
+                continue;
+            }
+            printSegment(str, start, i);
+            print('\\');
+            print(escaped);
+            if (escaped == 'u') {
+                print('0');
+                print('0');
+                print(HEX[(ch >> 4) & 0xF]);
+                print(HEX[ch & 0xF]);
+            }
+            start = i + 1;
+        }
+        printSegment(str, start, len);
+    }
+
     public void printEscaped1(String str, boolean escapeSpace) {
         if (str == null)
             return;
@@ -242,4 +506,39 @@ public abstract class JSONSerializer implements IJSONListener {
         }
     }
 
+    private void printLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            print(String.valueOf(value));
+            return;
+        }
+        if (value < 0) {
+            print('-');
+            value = -value;
+        }
+        char[] digits = fDigits;
+        int pos = digits.length;
+        do {
+            digits[--pos] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        for (; pos < digits.length; pos++) {
+            print(digits[pos]);
+        }
+    }
+
+    private void printSegment(CharSequence str, int start, int end) {
+        if (start < end) {
+            print(str, start, end);
+        }
+    }
+
+    private void push() {
+        if (fDepth == fStack.length) {
+            int[] stack = new int[fStack.length * 2];
+            System.arraycopy(fStack, 0, stack, 0, fDepth);
+            fStack = stack;
+        }
+        fStack[fDepth++] = 0;
+    }
+
 }
@@ -0,0 +1,180 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.util.Arrays;
+
+/**
+ * This table returns canonical string instances for property names read by
+ * the {@link JSONParser}. Names are hashed directly from the parser buffer,
+ * so a new string is created only for names which were not seen before.
+ * <p>
+ * The table uses open addressing with linear probing in an array with a fixed
+ * size. The number of kept symbols and the length of each symbol are bounded,
+ * so unexpected or adversarial keys can not make the table grow; longer names
+ * are always returned as new strings. When the table is full and a new name
+ * is found, all kept symbols are removed and the table starts a new
+ * generation with this name. So a document with a lot of unique keys does
+ * not disable canonicalization for all subsequent documents; it only
+ * replaces the set of kept names.
+ * </p>
+ * <p>
+ * The table is intended to be shared by all parsers reading documents with
+ * the same vocabulary, for the whole life of an application. It can be used
+ * by parsers in different threads. Concurrent modifications are not
+ * synchronized but they are harmless: in the worst case a symbol is added
+ * twice or a lookup misses an existing symbol and returns a new string. The
+ * {@link #clear()} method can be called at any time to forget all kept
+ * symbols.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class JSONSymbolTable {
+
+    /**
+     * The default maximal length of symbols kept in the table.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    /**
+     * The default maximal number of symbols kept in the table.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * The upper bound of the maximal size of tables. The array of a table is
+     * four times bigger than its maximal size.
+     */
+    public static final int MAX_SIZE_LIMIT = 1 << 16;
+
+    private static int getHash(CharSequence str) {
+        int hash = 0;
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            hash = 31 * hash + str.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean isEqual(String symbol, CharSequence str) {
+        int len = str.length();
+        if (symbol.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (symbol.charAt(i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final int fMaxLength;
+
+    private final int fMaxSize;
+
+    private int fSize;
+
+    private final String[] fSymbols;
+
+    public JSONSymbolTable() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxSize the maximal number of symbols kept in the table
+     * @param maxLength the maximal length of symbols kept in the table
+     */
+    public JSONSymbolTable(int maxSize, int maxLength) {
+        if (maxSize <= 0 || maxSize > MAX_SIZE_LIMIT) {
+            throw new IllegalArgumentException("Bad maximal size: " + maxSize);
+        }
+        fMaxSize = maxSize;
+        fMaxLength = maxLength;
+        // The load factor of the table is never greater than 0.5
+        int capacity = Integer.highestOneBit(maxSize) << 2;
+        fSymbols = new String[capacity];
+    }
+
+    /**
+     * Removes all symbols from this table.
+     */
+    public void clear() {
+        Arrays.fill(fSymbols, null);
+        fSize = 0;
+    }
+
+    /**
+     * Returns the maximal number of symbols kept in this table.
+     * 
+     * @return the maximal number of symbols kept in this table
+     */
+    public int getMaxSize() {
+        return fMaxSize;
+    }
+
+    /**
+     * Returns a canonical string with the same characters as the given
+     * sequence. If this sequence was already seen then the same string
+     * instance is returned.
+     * 
+     * @param str the characters of the symbol
+     * @return a string with the same characters as the given sequence
+     */
+    public String getSymbol(CharSequence str) {
+        if (str.length() > fMaxLength) {
+            return str.toString();
+        }
+        int hash = getHash(str);
+        String[] symbols = fSymbols;
+        int mask = symbols.length - 1;
+        int start = (hash ^ (hash >>> 16)) & mask;
+        int i = start;
+        // The number of probes is limited by the size of the array: the
+        // table can be filled above the maximal size by concurrent updates
+        for (int n = 0; n < symbols.length; n++) {
+            String symbol = symbols[i];
+            if (symbol == null) {
+                String result = str.toString();
+                if (fSize >= fMaxSize) {
+                    // Starts a new generation of symbols
+                    clear();
+                    i = start;
+                }
+                symbols[i] = result;
+                fSize++;
+                return result;
+            }
+            if (symbol.hashCode() == hash && isEqual(symbol, str)) {
+                return symbol;
+            }
+            i = (i + 1) & mask;
+        }
+        return str.toString();
+    }
+
+    /**
+     * Returns the number of symbols kept in this table.
+     * 
+     * @return the number of symbols kept in this table
+     */
+    public int size() {
+        return fSize;
+    }
+
+}
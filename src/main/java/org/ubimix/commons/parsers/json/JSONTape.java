@@ -0,0 +1,91 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This class defines the binary format of JSON event tapes produced by the
+ * {@link JSONTapeRecorder} and replayed by the {@link JSONTapePlayer}.
+ * <p>
+ * A tape starts with the {@link #HEADER} bytes followed by a sequence of
+ * events. Each event is one opcode byte optionally followed by its
+ * argument:
+ * </p>
+ * <ul>
+ * <li>lengths, indexes and long values are written as variable-length
+ * integers (7 bits per byte, the least significant group first); long
+ * values are zigzag-encoded to keep small negative values short;</li>
+ * <li>strings are written as their length in bytes followed by their UTF-8
+ * encoded characters;</li>
+ * <li>property names are written only once per tape; the first occurrence
+ * of a name ({@link #PROPERTY_NEW}) adds it to the table of names and all
+ * subsequent occurrences ({@link #PROPERTY_REF}) contain only the index of
+ * the name in this table;</li>
+ * <li>double values are written as 8 bytes of their IEEE 754
+ * representation;</li>
+ * <li>numbers given by their text ({@link #NUMBER}) are written as strings,
+ * so they are replayed without changes;</li>
+ * <li>the <code>null</code> literal ({@link #NULL}) and missing values
+ * ({@link #MISSING}) have their own opcodes.</li>
+ * </ul>
+ * Tapes do not depend on the platform, so they can be stored in caches or
+ * on disk and replayed later.
+ * 
+ * @author kotelnikov
+ */
+class JSONTape {
+
+    static final byte BEGIN_ARRAY = 1;
+
+    static final byte BEGIN_ELEMENT = 2;
+
+    static final byte BEGIN_OBJECT = 3;
+
+    static final byte DOUBLE = 4;
+
+    static final byte END_ARRAY = 5;
+
+    static final byte END_ELEMENT = 6;
+
+    static final byte END_OBJECT = 7;
+
+    static final byte END_PROPERTY = 8;
+
+    static final byte FALSE = 9;
+
+    /**
+     * The first bytes of each tape: two magic bytes and the version of the
+     * format.
+     */
+    static final byte[] HEADER = { 'J', 'T', 1 };
+
+    static final byte LONG = 10;
+
+    static final byte MISSING = 17;
+
+    static final byte NULL = 11;
+
+    static final byte NUMBER = 16;
+
+    static final byte PROPERTY_NEW = 12;
+
+    static final byte PROPERTY_REF = 13;
+
+    static final byte STRING = 14;
+
+    static final byte TRUE = 15;
+
+}
@@ -0,0 +1,366 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This class replays tapes recorded by the {@link JSONTapeRecorder}. Events
+ * are decoded directly from bytes without any lexical analysis, so replaying
+ * a tape is much faster than parsing the original text. Listeners
+ * implementing the {@link IJSONValueListener} interface receive typed values
+ * and strings as re-used character sequences; other listeners receive all
+ * values as strings, exactly as the {@link JSONParser} gives them. Instances of this class can be re-used to play multiple
+ * tapes but they are not thread-safe.
+ * 
+ * @author kotelnikov
+ */
+public class JSONTapePlayer {
+
+    /**
+     * Returns <code>true</code> if the given array starts with the header of
+     * tapes.
+     * 
+     * @param bytes the array to check
+     * @return <code>true</code> if the given array looks like a tape
+     */
+    public static boolean isTape(byte[] bytes) {
+        if (bytes == null || bytes.length < JSONTape.HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < JSONTape.HEADER.length; i++) {
+            if (bytes[i] != JSONTape.HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This buffer contains characters of the current string.
+     */
+    private char[] fChars = new char[64];
+
+    private int fCharsLen;
+
+    private int fEnd;
+
+    /**
+     * Names of properties defined in the current tape.
+     */
+    private String[] fNames = new String[16];
+
+    private int fNamesCount;
+
+    private int fPos;
+
+    /**
+     * Names of opened properties.
+     */
+    private String[] fStack = new String[16];
+
+    private int fStackDepth;
+
+    /**
+     * The table used to get canonical property names; it can be
+     * <code>null</code>.
+     */
+    private final JSONSymbolTable fSymbolTable;
+
+    private byte[] fTape;
+
+    /**
+     * This object gives access to the characters of the current string
+     * without copying them.
+     */
+    private final CharSequence fView = new CharSequence() {
+
+        public char charAt(int index) {
+            return fChars[index];
+        }
+
+        public int length() {
+            return fCharsLen;
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new String(fChars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(fChars, 0, fCharsLen);
+        }
+
+    };
+
+    public JSONTapePlayer() {
+        this(null);
+    }
+
+    /**
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; it can be <code>null</code>
+     */
+    public JSONTapePlayer(JSONSymbolTable symbolTable) {
+        fSymbolTable = symbolTable;
+    }
+
+    private IllegalArgumentException newError(String message) {
+        return new IllegalArgumentException(message
+            + " (tape position "
+            + fPos
+            + ")");
+    }
+
+    /**
+     * Replays all events of the given tape.
+     * 
+     * @param tape the tape to play
+     * @param listener the listener notified about recorded events
+     * @throws IllegalArgumentException if the given array is not a valid
+     *         tape
+     */
+    public void play(byte[] tape, IJSONListener listener)
+        throws IllegalArgumentException {
+        play(tape, 0, tape.length, listener);
+    }
+
+    /**
+     * Replays all events of the tape stored in the specified range of the
+     * given array.
+     * 
+     * @param tape the array containing the tape
+     * @param offset the position of the first byte of the tape
+     * @param len the length of the tape
+     * @param listener the listener notified about recorded events
+     * @throws IllegalArgumentException if the given range does not contain a
+     *         valid tape
+     */
+    public void play(byte[] tape, int offset, int len, IJSONListener listener)
+        throws IllegalArgumentException {
+        fTape = tape;
+        fPos = offset;
+        fEnd = offset + len;
+        try {
+            for (int i = 0; i < JSONTape.HEADER.length; i++) {
+                if (fPos >= fEnd || tape[fPos++] != JSONTape.HEADER[i]) {
+                    throw newError("Bad tape header");
+                }
+            }
+            IJSONValueListener valueListener = null;
+            if (listener instanceof IJSONValueListener) {
+                valueListener = (IJSONValueListener) listener;
+            }
+            playEvents(listener, valueListener);
+        } finally {
+            fTape = null;
+            for (int i = 0; i < fNamesCount; i++) {
+                fNames[i] = null;
+            }
+            fNamesCount = 0;
+            for (int i = 0; i < fStackDepth; i++) {
+                fStack[i] = null;
+            }
+            fStackDepth = 0;
+        }
+    }
+
+    private void playEvents(
+        IJSONListener listener,
+        IJSONValueListener valueListener) {
+        byte[] tape = fTape;
+        int depth = 0;
+        while (fPos < fEnd) {
+            byte opcode = tape[fPos++];
+            switch (opcode) {
+                case JSONTape.BEGIN_OBJECT:
+                    depth++;
+                    listener.beginObject();
+                    break;
+                case JSONTape.END_OBJECT:
+                    if (--depth < 0) {
+                        throw newError("Unexpected end of an object");
+                    }
+                    listener.endObject();
+                    break;
+                case JSONTape.BEGIN_ARRAY:
+                    depth++;
+                    listener.beginArray();
+                    break;
+                case JSONTape.END_ARRAY:
+                    if (--depth < 0) {
+                        throw newError("Unexpected end of an array");
+                    }
+                    listener.endArray();
+                    break;
+                case JSONTape.BEGIN_ELEMENT:
+                    listener.beginArrayElement();
+                    break;
+                case JSONTape.END_ELEMENT:
+                    listener.endArrayElement();
+                    break;
+                case JSONTape.PROPERTY_NEW:
+                case JSONTape.PROPERTY_REF: {
+                    String name = opcode == JSONTape.PROPERTY_NEW
+                        ? readNewName()
+                        : readNameRef();
+                    if (fStackDepth == fStack.length) {
+                        String[] stack = new String[fStackDepth * 2];
+                        System.arraycopy(fStack, 0, stack, 0, fStackDepth);
+                        fStack = stack;
+                    }
+                    fStack[fStackDepth++] = name;
+                    listener.beginObjectProperty(name);
+                    break;
+                }
+                case JSONTape.END_PROPERTY: {
+                    if (fStackDepth == 0) {
+                        throw newError("Unexpected end of a property");
+                    }
+                    String name = fStack[--fStackDepth];
+                    fStack[fStackDepth] = null;
+                    listener.endObjectProperty(name);
+                    break;
+                }
+                case JSONTape.STRING:
+                    readString();
+                    if (valueListener != null) {
+                        valueListener.onString(fView);
+                    } else {
+                        listener.onValue(fView.toString());
+                    }
+                    break;
+                case JSONTape.NUMBER:
+                    readString();
+                    if (valueListener != null) {
+                        valueListener.onNumber(fView);
+                    } else {
+                        listener.onValue(fView.toString());
+                    }
+                    break;
+                case JSONTape.LONG: {
+                    long value = readVarint();
+                    value = (value >>> 1) ^ -(value & 1);
+                    if (valueListener != null) {
+                        valueListener.onLong(value);
+                    } else {
+                        listener.onValue(String.valueOf(value));
+                    }
+                    break;
+                }
+                case JSONTape.DOUBLE: {
+                    if (fPos + 8 > fEnd) {
+                        throw newError("Truncated double value");
+                    }
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | (tape[fPos++] & 0xFF);
+                    }
+                    double value = Double.longBitsToDouble(bits);
+                    if (valueListener != null) {
+                        valueListener.onDouble(value);
+                    } else {
+                        listener.onValue(String.valueOf(value));
+                    }
+                    break;
+                }
+                case JSONTape.TRUE:
+                case JSONTape.FALSE: {
+                    boolean value = opcode == JSONTape.TRUE;
+                    if (valueListener != null) {
+                        valueListener.onBoolean(value);
+                    } else {
+                        listener.onValue(value ? "true" : "false");
+                    }
+                    break;
+                }
+                case JSONTape.NULL:
+                    if (valueListener != null) {
+                        valueListener.onNull();
+                    } else {
+                        listener.onValue("null");
+                    }
+                    break;
+                case JSONTape.MISSING:
+                    listener.onValue(null);
+                    break;
+                default:
+                    fPos--;
+                    throw newError("Unknown opcode " + opcode);
+            }
+        }
+        if (depth != 0 || fStackDepth != 0) {
+            throw newError("Truncated tape");
+        }
+    }
+
+    private String readNameRef() {
+        long index = readVarint();
+        if (index < 0 || index >= fNamesCount) {
+            throw newError("Unknown property name reference " + index);
+        }
+        return fNames[(int) index];
+    }
+
+    private String readNewName() {
+        readString();
+        String name = fSymbolTable != null
+            ? fSymbolTable.getSymbol(fView)
+            : fView.toString();
+        if (fNamesCount == fNames.length) {
+            String[] names = new String[fNamesCount * 2];
+            System.arraycopy(fNames, 0, names, 0, fNamesCount);
+            fNames = names;
+        }
+        fNames[fNamesCount++] = name;
+        return name;
+    }
+
+    /**
+     * Decodes a string in the buffer of characters.
+     */
+    private void readString() {
+        long size = readVarint();
+        if (size < 0) {
+            throw newError("Bad string length " + size);
+        }
+        if (size > fEnd - fPos) {
+            throw newError("Truncated string");
+        }
+        int end = fPos + (int) size;
+        if (fChars.length < size) {
+            fChars = new char[Math.max((int) size, fChars.length * 2)];
+        }
+        fCharsLen = UTF8Codec.decode(fTape, fPos, end, fChars, 0);
+        fPos = end;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (fPos >= fEnd) {
+                throw newError("Truncated value");
+            }
+            byte b = fTape[fPos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw newError("Malformed variable-length value");
+    }
+
+}
@@ -0,0 +1,250 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This listener records all received events in a compact binary tape which
+ * can be replayed later by the {@link JSONTapePlayer}. Tapes are stored as
+ * byte arrays (see {@link #toByteArray()}), so they can be kept in caches or
+ * written on disk. Property names are written only once per tape; all other
+ * occurrences of the same name are references to the first one. Typed
+ * values are recorded without conversion to strings.
+ * <p>
+ * Example:
+ * </p>
+ * 
+ * <pre>
+ * JSONTapeRecorder recorder = new JSONTapeRecorder();
+ * new JSONParser().parse(text, recorder);
+ * byte[] tape = recorder.toByteArray();
+ * ...
+ * new JSONTapePlayer().play(tape, listener);
+ * </pre>
+ * 
+ * @author kotelnikov
+ */
+public class JSONTapeRecorder implements IJSONValueListener {
+
+    private byte[] fBuf = new byte[256];
+
+    private int fLen;
+
+    /**
+     * Indexes of already recorded property names.
+     */
+    private final Map<String, Integer> fNames = new HashMap<String, Integer>();
+
+    public JSONTapeRecorder() {
+        reset();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArray()
+     */
+    public void beginArray() {
+        write(JSONTape.BEGIN_ARRAY);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArrayElement()
+     */
+    public void beginArrayElement() {
+        write(JSONTape.BEGIN_ELEMENT);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObject()
+     */
+    public void beginObject() {
+        write(JSONTape.BEGIN_OBJECT);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObjectProperty(java.lang.String)
+     */
+    public void beginObjectProperty(String property) {
+        Integer index = fNames.get(property);
+        if (index != null) {
+            write(JSONTape.PROPERTY_REF);
+            writeVarint(index);
+        } else {
+            fNames.put(property, fNames.size());
+            write(JSONTape.PROPERTY_NEW);
+            writeString(property);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArray()
+     */
+    public void endArray() {
+        write(JSONTape.END_ARRAY);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArrayElement()
+     */
+    public void endArrayElement() {
+        write(JSONTape.END_ELEMENT);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObject()
+     */
+    public void endObject() {
+        write(JSONTape.END_OBJECT);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObjectProperty(java.lang.String)
+     */
+    public void endObjectProperty(String property) {
+        write(JSONTape.END_PROPERTY);
+    }
+
+    private void ensureCapacity(int len) {
+        if (fLen + len > fBuf.length) {
+            byte[] buf = new byte[Math.max(fBuf.length * 2, fLen + len)];
+            System.arraycopy(fBuf, 0, buf, 0, fLen);
+            fBuf = buf;
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the recorded tape.
+     * 
+     * @return the length of the tape
+     */
+    public int getLength() {
+        return fLen;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onBoolean(boolean)
+     */
+    public void onBoolean(boolean value) {
+        write(value ? JSONTape.TRUE : JSONTape.FALSE);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onDouble(double)
+     */
+    public void onDouble(double value) {
+        ensureCapacity(9);
+        fBuf[fLen++] = JSONTape.DOUBLE;
+        long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            fBuf[fLen++] = (byte) (bits >>> shift);
+        }
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onLong(long)
+     */
+    public void onLong(long value) {
+        write(JSONTape.LONG);
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNull()
+     */
+    public void onNull() {
+        write(JSONTape.NULL);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNumber(java.lang.CharSequence)
+     */
+    public void onNumber(CharSequence value) {
+        write(JSONTape.NUMBER);
+        writeString(value);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onString(java.lang.CharSequence)
+     */
+    public void onString(CharSequence value) {
+        write(JSONTape.STRING);
+        writeString(value);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#onValue(java.lang.String)
+     */
+    public void onValue(String value) {
+        if (value == null) {
+            write(JSONTape.MISSING);
+        } else {
+            onString(value);
+        }
+    }
+
+    /**
+     * Removes all recorded events. After this call the recorder can be used
+     * to record a new tape.
+     */
+    public void reset() {
+        fNames.clear();
+        fLen = 0;
+        ensureCapacity(JSONTape.HEADER.length);
+        System.arraycopy(JSONTape.HEADER, 0, fBuf, 0, JSONTape.HEADER.length);
+        fLen = JSONTape.HEADER.length;
+    }
+
+    /**
+     * Returns a copy of the recorded tape.
+     * 
+     * @return the recorded tape
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[fLen];
+        System.arraycopy(fBuf, 0, result, 0, fLen);
+        return result;
+    }
+
+    private void write(byte b) {
+        if (fLen == fBuf.length) {
+            ensureCapacity(1);
+        }
+        fBuf[fLen++] = b;
+    }
+
+    /**
+     * Writes the length of the string in UTF-8 bytes and its encoded
+     * characters.
+     */
+    private void writeString(CharSequence str) {
+        int size = UTF8Codec.getEncodedLength(str);
+        writeVarint(size);
+        ensureCapacity(size);
+        fLen = UTF8Codec.encode(str, 0, str.length(), fBuf, fLen);
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            fBuf[fLen++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        fBuf[fLen++] = (byte) value;
+    }
+
+}
@@ -0,0 +1,162 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This adapter transforms typed notifications of the
+ * {@link IJSONValueListener} interface into string values and gives them to
+ * an existing {@link IJSONListener} instance. All structural events are
+ * delegated without modifications.
+ * <p>
+ * The adapted listener receives the same values as from the
+ * {@link JSONParser} itself: <code>null</code> values are given as the
+ * "null" string and numbers keep their original text, because parsers give
+ * to typed methods only numbers which are printed back without changes (see
+ * {@link IJSONValueListener}). Numbers received from other sources (for
+ * example from the {@link CBORParser} or the {@link JSONHelper}) are
+ * formatted using the {@link String#valueOf(double)} and
+ * {@link String#valueOf(long)} methods.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class JSONValueListenerAdapter implements IJSONValueListener {
+
+    private IJSONListener fListener;
+
+    /**
+     * @param listener the listener notified about all events
+     */
+    public JSONValueListenerAdapter(IJSONListener listener) {
+        fListener = listener;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArray()
+     */
+    public void beginArray() {
+        fListener.beginArray();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginArrayElement()
+     */
+    public void beginArrayElement() {
+        fListener.beginArrayElement();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObject()
+     */
+    public void beginObject() {
+        fListener.beginObject();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#beginObjectProperty(java.lang.String)
+     */
+    public void beginObjectProperty(String property) {
+        fListener.beginObjectProperty(property);
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArray()
+     */
+    public void endArray() {
+        fListener.endArray();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endArrayElement()
+     */
+    public void endArrayElement() {
+        fListener.endArrayElement();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObject()
+     */
+    public void endObject() {
+        fListener.endObject();
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#endObjectProperty(java.lang.String)
+     */
+    public void endObjectProperty(String property) {
+        fListener.endObjectProperty(property);
+    }
+
+    /**
+     * Returns the listener notified by this adapter.
+     * 
+     * @return the listener notified by this adapter
+     */
+    public IJSONListener getListener() {
+        return fListener;
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onBoolean(boolean)
+     */
+    public void onBoolean(boolean value) {
+        fListener.onValue(String.valueOf(value));
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onDouble(double)
+     */
+    public void onDouble(double value) {
+        fListener.onValue(String.valueOf(value));
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onLong(long)
+     */
+    public void onLong(long value) {
+        fListener.onValue(String.valueOf(value));
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNull()
+     */
+    public void onNull() {
+        fListener.onValue("null");
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onNumber(java.lang.CharSequence)
+     */
+    public void onNumber(CharSequence value) {
+        fListener.onValue(value.toString());
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONValueListener#onString(java.lang.CharSequence)
+     */
+    public void onString(CharSequence value) {
+        fListener.onValue(value.toString());
+    }
+
+    /**
+     * @see org.ubimix.commons.parsers.json.IJSONListener#onValue(java.lang.String)
+     */
+    public void onValue(String value) {
+        fListener.onValue(value);
+    }
+
+}
@@ -0,0 +1,190 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.io.IOException;
+
+/**
+ * This serializer writes JSON events to an {@link Appendable} (a
+ * {@link StringBuilder}, a {@link java.io.Writer}, ...). All printed
+ * characters are accumulated in an internal buffer which is flushed to the
+ * output each time when it is full, so no objects are created for printed
+ * fragments. The {@link #flush()} method should be called at the end of
+ * serialization to write remaining characters. This writer produces the
+ * lenient form; use the {@link StrictJSONWriter} for RFC 8259 output.
+ * 
+ * @author kotelnikov
+ */
+public class JSONWriter extends JSONSerializer {
+
+    /**
+     * The default size of the internal buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final char[] fBuf;
+
+    private int fLen;
+
+    private final Appendable fOutput;
+
+    /**
+     * This object gives access to the content of the buffer without copying
+     * it.
+     */
+    private final CharSequence fView = new CharSequence() {
+
+        public char charAt(int index) {
+            return fBuf[index];
+        }
+
+        public int length() {
+            return fLen;
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new String(fBuf, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(fBuf, 0, fLen);
+        }
+
+    };
+
+    /**
+     * @param output the output for serialized events
+     */
+    public JSONWriter(Appendable output) {
+        this(output, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * @param output the output for serialized events
+     * @param strict if this flag is <code>true</code> then this writer
+     *        produces RFC 8259 conforming output; subclasses using this mode
+     *        should implement the {@link IJSONValueListener} interface
+     */
+    protected JSONWriter(Appendable output, boolean strict) {
+        this(output, DEFAULT_BUFFER_SIZE, strict);
+    }
+
+    /**
+     * @param output the output for serialized events
+     * @param bufferSize the size of the internal buffer
+     */
+    public JSONWriter(Appendable output, int bufferSize) {
+        this(output, bufferSize, false);
+    }
+
+    /**
+     * @param output the output for serialized events
+     * @param bufferSize the size of the internal buffer
+     * @param strict if this flag is <code>true</code> then this writer
+     *        produces RFC 8259 conforming output; subclasses using this mode
+     *        should implement the {@link IJSONValueListener} interface
+     */
+    protected JSONWriter(Appendable output, int bufferSize, boolean strict) {
+        super(strict);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException(
+                "Buffer size should be a positive value");
+        }
+        fOutput = output;
+        fBuf = new char[bufferSize];
+    }
+
+    /**
+     * Writes all buffered characters to the output.
+     * 
+     * @throws JSONWriterException if the output fails to accept characters
+     */
+    public void flush() throws JSONWriterException {
+        if (fLen == 0) {
+            return;
+        }
+        try {
+            write(fBuf, fLen);
+        } catch (IOException e) {
+            throw new JSONWriterException(e);
+        } finally {
+            fLen = 0;
+        }
+    }
+
+    /**
+     * Returns the output of this serializer.
+     * 
+     * @return the output of this serializer
+     */
+    public Appendable getOutput() {
+        return fOutput;
+    }
+
+    @Override
+    protected void print(char ch) {
+        if (fLen == fBuf.length) {
+            flush();
+        }
+        fBuf[fLen++] = ch;
+    }
+
+    @Override
+    protected void print(CharSequence str, int start, int end) {
+        while (start < end) {
+            if (fLen == fBuf.length) {
+                flush();
+            }
+            int len = Math.min(end - start, fBuf.length - fLen);
+            if (str instanceof String) {
+                ((String) str).getChars(start, start + len, fBuf, fLen);
+                fLen += len;
+            } else {
+                for (int i = 0; i < len; i++) {
+                    fBuf[fLen++] = str.charAt(start + i);
+                }
+            }
+            start += len;
+        }
+    }
+
+    @Override
+    protected void print(String string) {
+        print(string, 0, string.length());
+    }
+
+    /**
+     * Writes the content of the buffer to the output. Subclasses can
+     * override this method to use more efficient methods of specific
+     * outputs.
+     * 
+     * @param buf the buffer to write
+     * @param len the number of characters to write
+     * @throws IOException if the output fails to accept characters
+     */
+    protected void write(char[] buf, int len) throws IOException {
+        if (fOutput instanceof StringBuilder) {
+            ((StringBuilder) fOutput).append(buf, 0, len);
+        } else if (fOutput instanceof StringBuffer) {
+            ((StringBuffer) fOutput).append(buf, 0, len);
+        } else {
+            fOutput.append(fView, 0, len);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This writer produces RFC 8259 conforming output. It receives typed values
+ * from parsers, so numbers, booleans and <code>null</code> values are
+ * printed without quotes and numbers keep their original text.
+ * 
+ * @author kotelnikov
+ */
+public class StrictJSONWriter extends JSONWriter implements IJSONValueListener {
+
+    /**
+     * @param output the output for serialized events
+     */
+    public StrictJSONWriter(Appendable output) {
+        super(output, true);
+    }
+
+    /**
+     * @param output the output for serialized events
+     * @param bufferSize the size of the internal buffer
+     */
+    public StrictJSONWriter(Appendable output, int bufferSize) {
+        super(output, bufferSize, true);
+    }
+
+}
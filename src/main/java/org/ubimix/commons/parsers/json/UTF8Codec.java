@@ -0,0 +1,226 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+/**
+ * This class contains UTF-8 encoding and decoding methods shared by binary
+ * parsers and writers of this package. It does not use <code>java.nio</code>
+ * classes, so it can be used in all environments.
+ * <p>
+ * All methods use the same policy for invalid input as the UTF-8 decoder of
+ * the JDK: each malformed sequence (an invalid first byte, a missing
+ * continuation byte, an overlong form or a code point above
+ * <code>U+10FFFF</code>) is replaced by one <code>U+FFFD</code> character
+ * and decoding continues after the longest valid prefix of this sequence. An
+ * encoded surrogate is replaced by one <code>U+FFFD</code> character as a
+ * whole.
+ * Unpaired surrogates in encoded strings are written as
+ * <code>U+FFFD</code>, so the encoder always produces valid UTF-8.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+class UTF8Codec {
+
+    static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    /**
+     * Decodes all bytes of the specified range and writes the decoded
+     * characters in the given array. The array should have enough space for
+     * one character per byte.
+     * 
+     * @param bytes the bytes to decode
+     * @param pos the position of the first byte to decode
+     * @param end the position after the last byte to decode
+     * @param chars the array receiving decoded characters
+     * @param len the position of the first character to write
+     * @return the position after the last written character
+     */
+    static int decode(byte[] bytes, int pos, int end, char[] chars, int len) {
+        while (pos < end) {
+            int b = bytes[pos];
+            if (b >= 0) {
+                chars[len++] = (char) b;
+                pos++;
+                continue;
+            }
+            int result = decodeSequence(bytes, pos, end);
+            pos += result >>> 24;
+            int code = result & 0xFFFFFF;
+            if (code >= 0x10000) {
+                code -= 0x10000;
+                chars[len++] = (char) (0xD800 + (code >> 10));
+                chars[len++] = (char) (0xDC00 + (code & 0x3FF));
+            } else {
+                chars[len++] = (char) code;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Decodes one UTF-8 sequence started at the specified position and
+     * appends the decoded character (or the surrogate pair) to the buffer.
+     * 
+     * @param bytes the bytes to decode
+     * @param pos the position of the first byte of the sequence
+     * @param end the position after the last available byte
+     * @param buf the buffer receiving the decoded character
+     * @return the position after the sequence
+     */
+    static int decodeChar(byte[] bytes, int pos, int end, StringBuilder buf) {
+        int b = bytes[pos];
+        if (b >= 0) {
+            buf.append((char) b);
+            return pos + 1;
+        }
+        int result = decodeSequence(bytes, pos, end);
+        int code = result & 0xFFFFFF;
+        if (code >= 0x10000) {
+            code -= 0x10000;
+            buf.append((char) (0xD800 + (code >> 10)));
+            buf.append((char) (0xDC00 + (code & 0x3FF)));
+        } else {
+            buf.append((char) code);
+        }
+        return pos + (result >>> 24);
+    }
+
+    /**
+     * Decodes a multi-byte sequence. Returns the number of consumed bytes in
+     * the highest byte of the result and the decoded code point (or
+     * <code>U+FFFD</code> for malformed sequences) in the three lower bytes.
+     */
+    private static int decodeSequence(byte[] bytes, int pos, int end) {
+        int b = bytes[pos] & 0xFF;
+        int n;
+        int code;
+        // The range of the second byte excludes overlong forms and code
+        // points above U+10FFFF; encoded surrogates are rejected as a whole
+        int min = 0x80;
+        int max = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            n = 1;
+            code = b & 0x1F;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            n = 2;
+            code = b & 0x0F;
+            if (b == 0xE0) {
+                min = 0xA0;
+            }
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            n = 3;
+            code = b & 0x07;
+            if (b == 0xF0) {
+                min = 0x90;
+            } else if (b == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return (1 << 24) | REPLACEMENT_CHAR;
+        }
+        int k = 1;
+        for (; k <= n && pos + k < end; k++) {
+            int c = bytes[pos + k] & 0xFF;
+            if (c < min || c > max) {
+                return (k << 24) | REPLACEMENT_CHAR;
+            }
+            code = (code << 6) | (c & 0x3F);
+            min = 0x80;
+            max = 0xBF;
+        }
+        if (k <= n || (code >= 0xD800 && code <= 0xDFFF)) {
+            return (k << 24) | REPLACEMENT_CHAR;
+        }
+        return (k << 24) | code;
+    }
+
+    /**
+     * Encodes characters of the specified range of the given sequence. The
+     * array should have enough space for three bytes per character.
+     * Surrogate pairs split by the end of the range are encoded as two
+     * unpaired surrogates, so callers encoding long strings by parts should
+     * not split pairs.
+     * 
+     * @param str the characters to encode
+     * @param start the position of the first character to encode
+     * @param end the position after the last character to encode
+     * @param buf the array receiving encoded bytes
+     * @param pos the position of the first byte to write
+     * @return the position after the last written byte
+     */
+    static int encode(
+        CharSequence str,
+        int start,
+        int end,
+        byte[] buf,
+        int pos) {
+        for (int i = start; i < end; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                buf[pos++] = (byte) ch;
+            } else if (ch < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (ch >> 6));
+                buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch)
+                && i + 1 < end
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int code = Character.toCodePoint(ch, str.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (code >> 18));
+                buf[pos++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (code & 0x3F));
+            } else {
+                if (ch >= 0xD800 && ch <= 0xDFFF) {
+                    ch = REPLACEMENT_CHAR;
+                }
+                buf[pos++] = (byte) (0xE0 | (ch >> 12));
+                buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the number of bytes required to encode the given characters.
+     * 
+     * @param str the characters to encode
+     * @return the length of the encoded string in bytes
+     */
+    static int getEncodedLength(CharSequence str) {
+        int len = str.length();
+        int size = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                size++;
+            } else if (ch < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(ch)
+                && i + 1 < len
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+}
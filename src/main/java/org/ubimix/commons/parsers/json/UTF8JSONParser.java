@@ -0,0 +1,574 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.commons.parsers.json;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This parser reads JSON texts directly from UTF-8 encoded bytes without
+ * decoding them to characters first. Structural characters, spaces, numbers
+ * and ASCII property names and values are processed directly on bytes; only
+ * values containing escape sequences or non-ASCII characters are decoded.
+ * Listeners implementing the {@link IJSONValueListener} interface receive
+ * numbers and booleans without creation of strings and ASCII strings as
+ * views over the original bytes, so a string is created only for values
+ * which are really used by the listener.
+ * <p>
+ * This parser accepts the same lenient syntax and notifies listeners about
+ * the same events as the lenient {@link JSONParser}. Malformed UTF-8
+ * sequences are replaced by the <code>U+FFFD</code> character. This class is
+ * not available in GWT.
+ * </p>
+ * 
+ * @author kotelnikov
+ */
+public class UTF8JSONParser {
+
+    /**
+     * A view over a range of ASCII bytes; it is re-used for all values.
+     */
+    private static class AsciiSequence implements CharSequence {
+
+        private byte[] fBytes;
+
+        private int fEnd;
+
+        private int fStart;
+
+        public char charAt(int index) {
+            return (char) fBytes[fStart + index];
+        }
+
+        public int length() {
+            return fEnd - fStart;
+        }
+
+        public AsciiSequence set(byte[] bytes, int start, int end) {
+            fBytes = bytes;
+            fStart = start;
+            fEnd = end;
+            return this;
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] array = new char[fEnd - fStart];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (char) fBytes[fStart + i];
+            }
+            return new String(array);
+        }
+
+    }
+
+    /**
+     * The maximal size of the re-used array for bytes of direct buffers;
+     * bigger buffers are copied to temporary arrays, so this parser does not
+     * keep the memory after they are parsed.
+     */
+    private static final int MAX_COPY_BUF_SIZE = 1 << 16;
+
+    private static boolean isDelimiter(byte b) {
+        return b >= 0 && JSONParser.isValueDelimiter((char) b);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b >= 0 && JSONParser.isSpaceChar((char) b);
+    }
+
+    private final AsciiSequence fAscii = new AsciiSequence();
+
+    private byte[] fBytes;
+
+    /**
+     * This buffer is used to copy bytes from small direct byte buffers.
+     */
+    private byte[] fCopyBuf = new byte[0];
+
+    private int fEnd;
+
+    private IJSONListener fListener;
+
+    private final JSONLiteral fLiteral = new JSONLiteral();
+
+    private int fPos;
+
+    /**
+     * The table used to get canonical property names; it can be
+     * <code>null</code>.
+     */
+    private final JSONSymbolTable fSymbolTable;
+
+    /**
+     * This buffer is re-used for all decoded values.
+     */
+    private final StringBuilder fText = new StringBuilder();
+
+    /**
+     * The typed listener or <code>null</code> if the current listener does
+     * not implement the {@link IJSONValueListener} interface.
+     */
+    private IJSONValueListener fValueListener;
+
+    public UTF8JSONParser() {
+        this(null);
+    }
+
+    /**
+     * @param symbolTable the table used to get canonical instances of
+     *        property names; if this parameter is <code>null</code> then a
+     *        new string is created for each property name
+     */
+    public UTF8JSONParser(JSONSymbolTable symbolTable) {
+        fSymbolTable = symbolTable;
+    }
+
+    /**
+     * Decodes one UTF-8 sequence started at the specified position.
+     * 
+     * @param pos the position of the first byte of the sequence
+     * @param buf the buffer receiving the decoded character
+     * @return the position after the sequence
+     */
+    private int decodeChar(int pos, StringBuilder buf) {
+        return UTF8Codec.decodeChar(fBytes, pos, fEnd, buf);
+    }
+
+    private void finish() {
+        fListener = null;
+        fValueListener = null;
+        fBytes = null;
+        fAscii.set(null, 0, 0);
+    }
+
+    public JSONSymbolTable getSymbolTable() {
+        return fSymbolTable;
+    }
+
+    private void notifyValue(CharSequence value, boolean quoted) {
+        if (fValueListener == null) {
+            fListener.onValue(value.toString());
+            return;
+        }
+        if (quoted) {
+            fValueListener.onString(value);
+            return;
+        }
+        switch (fLiteral.parse(value)) {
+            case JSONLiteral.NULL:
+                fValueListener.onNull();
+                break;
+            case JSONLiteral.BOOLEAN:
+                fValueListener.onBoolean(fLiteral.getBoolean());
+                break;
+            case JSONLiteral.LONG:
+                fValueListener.onLong(fLiteral.getLong());
+                break;
+            case JSONLiteral.DOUBLE:
+                fValueListener.onDouble(fLiteral.getDouble());
+                break;
+            case JSONLiteral.NUMBER:
+                fValueListener.onNumber(value);
+                break;
+            default:
+                fValueListener.onString(value);
+                break;
+        }
+    }
+
+    /**
+     * Parses the first JSON object from the given bytes. All bytes before the
+     * first object are skipped.
+     * 
+     * @param bytes the UTF-8 encoded text
+     * @param listener the listener notified about parsed elements
+     */
+    public void parse(byte[] bytes, IJSONListener listener) {
+        parse(bytes, 0, bytes.length, listener);
+    }
+
+    /**
+     * Parses the first JSON object from the given range of bytes. All bytes
+     * before the first object are skipped.
+     * 
+     * @param bytes the array containing the UTF-8 encoded text
+     * @param offset the position of the first byte of the text
+     * @param len the number of bytes in the text
+     * @param listener the listener notified about parsed elements
+     */
+    public void parse(
+        byte[] bytes,
+        int offset,
+        int len,
+        IJSONListener listener) {
+        start(bytes, offset, len, listener);
+        try {
+            while (fPos < fEnd && fBytes[fPos] != '{' && fBytes[fPos] != 0) {
+                fPos++;
+            }
+            skipObject();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Parses the first JSON object from the remaining bytes of the given
+     * buffer. The position of the buffer is not changed.
+     * 
+     * @param buffer the buffer containing the UTF-8 encoded text
+     * @param listener the listener notified about parsed elements
+     */
+    public void parse(ByteBuffer buffer, IJSONListener listener) {
+        if (buffer.hasArray()) {
+            parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer
+                .remaining(), listener);
+        } else {
+            parse(toArray(buffer), 0, buffer.remaining(), listener);
+        }
+    }
+
+    /**
+     * Parses all top-level values (documents) from the given range of bytes
+     * like the
+     * {@link JSONParser#parseStream(org.ubimix.commons.parsers.CharStream, IJSONListener)}
+     * method.
+     * 
+     * @param bytes the array containing the UTF-8 encoded text
+     * @param offset the position of the first byte of the text
+     * @param len the number of bytes in the text
+     * @param listener the listener notified about parsed elements
+     * @return the number of parsed documents
+     */
+    public int parseStream(
+        byte[] bytes,
+        int offset,
+        int len,
+        IJSONListener listener) {
+        IJSONDocumentListener documentListener = null;
+        if (listener instanceof IJSONDocumentListener) {
+            documentListener = (IJSONDocumentListener) listener;
+        }
+        start(bytes, offset, len, listener);
+        int count = 0;
+        try {
+            while (skipDocumentSeparators()) {
+                if (documentListener != null) {
+                    documentListener.beginDocument(count);
+                }
+                skipToken();
+                if (documentListener != null) {
+                    documentListener.endDocument(count);
+                }
+                count++;
+            }
+        } finally {
+            finish();
+        }
+        return count;
+    }
+
+    /**
+     * Parses all top-level values (documents) from the remaining bytes of
+     * the given buffer. The position of the buffer is not changed.
+     * 
+     * @param buffer the buffer containing the UTF-8 encoded text
+     * @param listener the listener notified about parsed elements
+     * @return the number of parsed documents
+     */
+    public int parseStream(ByteBuffer buffer, IJSONListener listener) {
+        if (buffer.hasArray()) {
+            return parseStream(buffer.array(), buffer.arrayOffset()
+                + buffer.position(), buffer.remaining(), listener);
+        }
+        return parseStream(toArray(buffer), 0, buffer.remaining(), listener);
+    }
+
+    /**
+     * Decodes an escape sequence.
+     * 
+     * @param pos the position of the byte following the back slash
+     * @param buf the buffer receiving the decoded character
+     * @return the position after the escape sequence
+     */
+    private int readEscape(int pos, StringBuilder buf) {
+        byte[] bytes = fBytes;
+        byte b = bytes[pos];
+        if (b < 0) {
+            return decodeChar(pos, buf);
+        }
+        char ch = (char) b;
+        pos++;
+        if (ch != 'u') {
+            char escaped = JSONParser.getEscapedChar(ch);
+            buf.append(escaped != 0 ? escaped : ch);
+            return pos;
+        }
+        int mark = buf.length();
+        buf.append('u');
+        int value = 0;
+        int i = 0;
+        for (; i < 4 && pos < fEnd && bytes[pos] >= 0; i++, pos++) {
+            ch = (char) bytes[pos];
+            if (!JSONParser.isHex(ch)) {
+                break;
+            }
+            value = (value << 4) | JSONParser.getHexValue(ch);
+            buf.append(ch);
+        }
+        if (i == 4) {
+            buf.setLength(mark);
+            buf.append((char) value);
+        }
+        return pos;
+    }
+
+    /**
+     * Reads a non-quoted value or property name. The returned sequence is
+     * valid only until the next value is read.
+     */
+    private CharSequence readPlain() {
+        byte[] bytes = fBytes;
+        int start = fPos;
+        boolean ascii = true;
+        int pos = start;
+        for (; pos < fEnd && !isDelimiter(bytes[pos]); pos++) {
+            ascii &= bytes[pos] >= 0;
+        }
+        fPos = pos;
+        if (ascii) {
+            return fAscii.set(bytes, start, pos);
+        }
+        StringBuilder buf = fText;
+        buf.setLength(0);
+        for (int i = start; i < pos;) {
+            i = decodeChar(i, buf);
+        }
+        return buf;
+    }
+
+    private String readPropertyName() {
+        skipSpaces();
+        CharSequence name = readQuoted();
+        if (name == null) {
+            name = readPlain();
+        }
+        return fSymbolTable != null ? fSymbolTable.getSymbol(name) : name
+            .toString();
+    }
+
+    /**
+     * Reads a quoted value if the current byte is a quote. ASCII values
+     * without escape sequences are returned as views over the bytes; all
+     * other values are decoded. The returned sequence is valid only until the
+     * next value is read.
+     * 
+     * @return the value or <code>null</code> if the current byte is not a
+     *         quote
+     */
+    private CharSequence readQuoted() {
+        if (fPos >= fEnd) {
+            return null;
+        }
+        byte[] bytes = fBytes;
+        byte quot = bytes[fPos];
+        if (quot != '"' && quot != '\'') {
+            return null;
+        }
+        int start = ++fPos;
+        int pos = start;
+        for (; pos < fEnd; pos++) {
+            byte b = bytes[pos];
+            if (b == quot) {
+                fPos = pos + 1;
+                return fAscii.set(bytes, start, pos);
+            }
+            if (b == '\\' || b < 0) {
+                break;
+            }
+        }
+        StringBuilder buf = fText;
+        buf.setLength(0);
+        for (int i = start; i < pos; i++) {
+            buf.append((char) bytes[i]);
+        }
+        while (pos < fEnd) {
+            byte b = bytes[pos];
+            if (b == quot) {
+                pos++;
+                break;
+            }
+            if (b < 0) {
+                pos = decodeChar(pos, buf);
+            } else if (b != '\\') {
+                buf.append((char) b);
+                pos++;
+            } else if (++pos < fEnd) {
+                pos = readEscape(pos, buf);
+            }
+        }
+        fPos = pos;
+        return buf;
+    }
+
+    private boolean skipArray() {
+        skipSpaces();
+        if (fPos >= fEnd || fBytes[fPos] != '[') {
+            return false;
+        }
+        fPos++;
+        fListener.beginArray();
+        while (fPos < fEnd && fBytes[fPos] != 0) {
+            if (fBytes[fPos] == ']') {
+                fPos++;
+                break;
+            }
+            fListener.beginArrayElement();
+            skipToken();
+            fListener.endArrayElement();
+            skipSpaces();
+            if (fPos < fEnd && fBytes[fPos] == ',') {
+                fPos++;
+                skipSpaces();
+            }
+        }
+        fListener.endArray();
+        return true;
+    }
+
+    private boolean skipDocumentSeparators() {
+        while (true) {
+            skipSpaces();
+            if (fPos >= fEnd) {
+                return false;
+            }
+            byte b = fBytes[fPos];
+            if (b == '{' || b == '[' || !isDelimiter(b)) {
+                return true;
+            }
+            fPos++;
+        }
+    }
+
+    private boolean skipObject() {
+        skipSpaces();
+        if (fPos >= fEnd || fBytes[fPos] != '{') {
+            return false;
+        }
+        fPos++;
+        fListener.beginObject();
+        while (fPos < fEnd && fBytes[fPos] != 0) {
+            if (fBytes[fPos] == '}') {
+                fPos++;
+                break;
+            }
+            skipSpaces();
+            if (fPos >= fEnd || fBytes[fPos] == 0) {
+                break;
+            }
+
+            String property = readPropertyName();
+            if (property == null || property.length() == 0) {
+                break;
+            }
+
+            skipSpaces();
+            fListener.beginObjectProperty(property);
+            if (fPos < fEnd && fBytes[fPos] == ':') {
+                fPos++;
+                skipToken();
+            } else {
+                fListener.onValue(null);
+            }
+            fListener.endObjectProperty(property);
+            skipSpaces();
+
+            if (fPos < fEnd && fBytes[fPos] == ',') {
+                fPos++;
+                skipSpaces();
+            }
+        }
+        fListener.endObject();
+        return true;
+    }
+
+    private void skipSpaces() {
+        while (fPos < fEnd && isSpace(fBytes[fPos])) {
+            fPos++;
+        }
+    }
+
+    private void skipToken() {
+        skipSpaces();
+        if (!skipObject() && !skipArray()) {
+            CharSequence value = readQuoted();
+            boolean quoted = value != null;
+            if (!quoted) {
+                value = readPlain();
+            }
+            notifyValue(value, quoted);
+        }
+    }
+
+    private void start(
+        byte[] bytes,
+        int offset,
+        int len,
+        IJSONListener listener) {
+        fListener = listener;
+        fValueListener = listener instanceof IJSONValueListener
+            ? (IJSONValueListener) listener
+            : null;
+        fBytes = bytes;
+        fPos = offset;
+        fEnd = offset + len;
+        // Skips the byte order mark
+        if (len >= 3
+            && bytes[offset] == (byte) 0xEF
+            && bytes[offset + 1] == (byte) 0xBB
+            && bytes[offset + 2] == (byte) 0xBF) {
+            fPos += 3;
+        }
+    }
+
+    /**
+     * Copies the remaining bytes of the given buffer to an array. Small
+     * buffers are copied to the re-used internal array and big buffers to a
+     * new array.
+     * 
+     * @return an array starting with the remaining bytes of the buffer
+     */
+    private byte[] toArray(ByteBuffer buffer) {
+        int len = buffer.remaining();
+        byte[] array;
+        if (len > MAX_COPY_BUF_SIZE) {
+            array = new byte[len];
+        } else {
+            if (fCopyBuf.length < len) {
+                fCopyBuf = new byte[len];
+            }
+            array = fCopyBuf;
+        }
+        buffer.duplicate().get(array, 0, len);
+        return array;
+    }
+
+}
@@ -18,6 +18,7 @@ package org.ubimix.commons.parsers.mailaddress;
 
 import org.ubimix.commons.parsers.AbstractStringParser;
 import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
 
 /**
  * @author kotelnikov
@@ -28,6 +29,24 @@ public class UserAddressParser extends AbstractStringParser {
         boolean onUserAddress(String email, String name);
     }
 
+    /**
+     * This matcher accepts characters separating addresses.
+     */
+    private final ICharMatcher fSeparatorMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isSpace(ch) || isDelimiter(ch);
+        }
+    };
+
+    /**
+     * This matcher accepts characters terminating user names.
+     */
+    private final ICharMatcher fWordsMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isDelimiter(ch) || ch == '<';
+        }
+    };
+
     @Override
     protected boolean isQuot(char ch) {
         // return ch == '\'' || ch == '"';
@@ -35,19 +54,15 @@ public class UserAddressParser extends AbstractStringParser {
     }
 
     /**
-     * Parses the given string and returns a list of {@link UserAdress} objects
+     * Parses the given stream and returns a list of {@link UserAdress} objects
      * 
-     * @param str the string to parse
+     * @param stream the stream to parse
      * @return a list of {@link UserAdress} objects corresponding to the
-     *         specified string
+     *         specified stream
      */
-    public void parseAdressList(String str, IListener listener) {
-        CharStream stream = new CharStream(str);
+    public void parseAdressList(CharStream stream, IListener listener) {
         while (!stream.isTerminated()) {
-            for (char ch = stream.getChar(); !stream.isTerminated()
-                && (isSpace(ch) || isDelimiter(ch)); stream.incPos(), ch = stream
-                .getChar()) {
-            }
+            stream.skipWhile(fSeparatorMatcher);
             if (stream.isTerminated()) {
                 break;
             }
@@ -75,13 +90,20 @@ public class UserAddressParser extends AbstractStringParser {
         }
     }
 
+    /**
+     * Parses the given string and notifies the listener about each found
+     * address.
+     * 
+     * @param str the string to parse
+     * @param listener the listener notified about addresses
+     */
+    public void parseAdressList(String str, IListener listener) {
+        parseAdressList(new CharStream(str), listener);
+    }
+
     private String readWords(CharStream stream) {
         StringBuilder builder = new StringBuilder();
-        for (char ch = stream.getChar(); !stream.isTerminated()
-            && !isDelimiter(ch)
-            && ch != '<'; stream.incPos(), ch = stream.getChar()) {
-            builder.append(ch);
-        }
+        stream.readUntil(fWordsMatcher, builder);
         return builder.toString();
     }
 
@@ -91,14 +113,9 @@ public class UserAddressParser extends AbstractStringParser {
             return null;
         }
         StringBuilder builder = new StringBuilder();
-        for (stream.incPos(), ch = stream.getChar(); !stream.isTerminated(); stream
-            .incPos(), ch = stream.getChar()) {
-            if (ch == '>') {
-                stream.incPos();
-                break;
-            }
-            builder.append(ch);
-        }
+        stream.incPos();
+        stream.readUntil('>', builder);
+        stream.incPos();
         return builder.toString();
     }
 
@@ -18,12 +18,27 @@ package org.ubimix.commons.parsers.query;
 
 import org.ubimix.commons.parsers.AbstractStringParser;
 import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
 
 /**
  * @author kotelnikov
  */
 public class QueryParser extends AbstractStringParser implements IQueryParser {
 
+    /**
+     * This matcher accepts all characters terminating words and the escape
+     * character.
+     */
+    private final ICharMatcher fWordMatcher = new ICharMatcher() {
+        public boolean match(char ch) {
+            return isSpace(ch)
+                || ch == '('
+                || ch == ')'
+                || ch == '\\'
+                || ch == getTokenDelimiter();
+        }
+    };
+
     /**
      * 
      */
@@ -83,11 +98,13 @@ public class QueryParser extends AbstractStringParser implements IQueryParser {
     }
 
     /**
-     * @see org.ubimix.commons.parsers.query.IQueryParser#parse(java.lang.String,
-     *      org.ubimix.commons.parsers.query.IQueryParserListener)
+     * Parses all queries from the given stream and notifies the listener
+     * about found tokens.
+     * 
+     * @param stream the stream to parse
+     * @param listener the listener notified about query tokens
      */
-    public void parse(String str, IQueryParserListener listener) {
-        CharStream stream = new CharStream(str);
+    public void parse(CharStream stream, IQueryParserListener listener) {
         while (!stream.isTerminated()) {
             listener.beginQuery();
             parse(stream, listener, true);
@@ -95,26 +112,25 @@ public class QueryParser extends AbstractStringParser implements IQueryParser {
         }
     }
 
+    /**
+     * @see org.ubimix.commons.parsers.query.IQueryParser#parse(java.lang.String,
+     *      org.ubimix.commons.parsers.query.IQueryParserListener)
+     */
+    public void parse(String str, IQueryParserListener listener) {
+        parse(new CharStream(str), listener);
+    }
+
     private String readWord(CharStream stream) {
-        boolean escaped = false;
         StringBuilder buf = new StringBuilder();
-        char tokenDelimiter = getTokenDelimiter();
-        for (char ch = stream.getChar(); !stream.isTerminated(); stream
-            .incPos(), ch = stream.getChar()) {
-            if (escaped) {
-                buf.append(ch);
-                escaped = false;
-            } else {
-                if (escaped = (ch == '\\')) {
-                    continue;
-                }
-                if (isSpace(ch)
-                    || ch == '('
-                    || ch == ')'
-                    || ch == tokenDelimiter) {
-                    break;
-                }
-                buf.append(ch);
+        while (!stream.isTerminated()) {
+            stream.readUntil(fWordMatcher, buf);
+            if (stream.isTerminated() || stream.getChar() != '\\') {
+                break;
+            }
+            stream.incPos();
+            if (!stream.isTerminated()) {
+                buf.append(stream.getChar());
+                stream.incPos();
             }
         }
         return buf.toString();
@@ -31,6 +31,7 @@ public class AllTests {
         suite.addTestSuite(UserAdressParserTest.class);
         suite.addTestSuite(QueryParserTest.class);
         suite.addTestSuite(JSONParserTest.class);
+        suite.addTestSuite(CharStreamTest.class);
         // $JUnit-END$
         return suite;
     }
@@ -0,0 +1,429 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStreamLimitException;
+import org.ubimix.commons.parsers.CharStreamPool;
+import org.ubimix.commons.parsers.SimpleCharLoader;
+import org.ubimix.commons.parsers.CharStream.ICharBlockLoader;
+import org.ubimix.commons.parsers.CharStream.ICharLoader;
+import org.ubimix.commons.parsers.CharStream.ICharMatcher;
+import org.ubimix.commons.parsers.CharStream.Marker;
+import org.ubimix.commons.parsers.CharStream.Pointer;
+import org.ubimix.commons.parsers.CharStream.Slice;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.query.QueryParser;
+import org.ubimix.commons.parsers.query.QueryParserListener;
+
+/**
+ * @author kotelnikov
+ */
+public class CharStreamTest extends TestCase {
+
+    /**
+     * This loader returns characters one by one; it is used to check that
+     * loaders without block access are still supported.
+     */
+    private static class CharByCharLoader implements ICharLoader {
+
+        private int fPos;
+
+        private String fStr;
+
+        public CharByCharLoader(String str) {
+            fStr = str;
+        }
+
+        public int readNext() {
+            return fPos < fStr.length() ? fStr.charAt(fPos++) : -1;
+        }
+
+        @Override
+        public String toString() {
+            return fStr;
+        }
+    }
+
+    private static String newString(int len) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            buf.append((char) ('a' + (i % 26)));
+            if (i % 10 == 9) {
+                buf.append('\n');
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @param name
+     */
+    public CharStreamTest(String name) {
+        super(name);
+    }
+
+    private String read(CharStream stream) {
+        StringBuilder buf = new StringBuilder();
+        for (char ch = stream.getChar(); !stream.isTerminated(); stream
+            .incPos(), ch = stream.getChar()) {
+            buf.append(ch);
+        }
+        return buf.toString();
+    }
+
+    public void testCapacity() {
+        String str = newString(5000);
+        CharStream stream = new CharStream(
+            new CharByCharLoader(str),
+            100,
+            4000);
+        assertEquals(128, stream.getCapacity());
+        stream.getChar();
+        Marker marker = stream.markPosition();
+        for (int i = 0; i < 3000; i++) {
+            stream.incPos();
+        }
+        assertEquals(4096, stream.getCapacity());
+        assertEquals(str.substring(0, 3000), marker.getSubstring());
+        marker.close(false);
+        assertTrue(stream.getCapacity() < 4096);
+        for (int i = 0; i < 1500; i++) {
+            stream.incPos();
+        }
+        assertEquals(128, stream.getCapacity());
+        assertEquals(str.substring(4500), read(stream));
+
+        stream = new CharStream(new CharByCharLoader(str), 100, 4000);
+        stream.getChar();
+        stream.markPosition();
+        try {
+            read(stream);
+            fail();
+        } catch (CharStreamLimitException e) {
+            assertEquals(4000, e.getLimit());
+            assertTrue(e.getPointer().pos <= 4000);
+        }
+    }
+
+    public void testDirectContent() {
+        String str = newString(1000);
+        char[] array = str.toCharArray();
+        CharStream stream = new CharStream(array, 500, true);
+        assertEquals(array.length, stream.getCapacity());
+        stream.getChar();
+        for (int i = 0; i < 100; i++) {
+            stream.incPos();
+        }
+        Marker marker = stream.markPosition();
+        assertEquals(400, stream.skipUntil('\0'));
+        assertTrue(stream.isTerminated());
+        assertEquals(str.substring(100, 500), marker.getSubstring());
+        assertTrue(marker.getSlice().contentEquals(str.substring(100, 500)));
+        Pointer pointer = stream.getPointer();
+        assertEquals(500, pointer.pos);
+        assertEquals(45, pointer.line);
+        assertEquals(5, pointer.column);
+        marker.close(false);
+
+        StringBuilder builder = new StringBuilder("ab\ncd");
+        stream.reset(builder);
+        assertEquals("ab\ncd", read(stream));
+        assertEquals(1, stream.getPointer().line);
+
+        stream.reset(new CharByCharLoader(str));
+        assertEquals(CharStream.DEFAULT_CAPACITY, stream.getCapacity());
+        assertEquals(str, read(stream));
+        // The shared array should never be modified by the stream
+        assertEquals(str, new String(array));
+
+        CharStream first = new CharStream("abc");
+        assertTrue(first.toString().contains("direct"));
+        assertEquals(first, new CharStream("abc"));
+        assertEquals(first, new CharStream("abc".toCharArray()));
+        assertFalse(first.equals(new CharStream("abd")));
+        assertFalse(first.equals(new CharStream("ab")));
+        first.getChar();
+        assertFalse(first.equals(new CharStream("abc")));
+    }
+
+    public void testLimitInParsers() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            buf.append(" value");
+        }
+        CharStream stream = new CharStream(new SimpleCharLoader("{ a : '"
+            + buf), 256, 1000);
+        try {
+            new JSONParser().parse(stream, new JSONListener());
+            fail();
+        } catch (CharStreamLimitException e) {
+            assertEquals(1000, e.getLimit());
+        }
+
+        stream = new CharStream(
+            new SimpleCharLoader(" 'abc " + buf),
+            256,
+            1000);
+        try {
+            new QueryParser().parse(stream, new QueryParserListener() {
+                public void beginToken(String prefix) {
+                }
+
+                public void endToken(String prefix) {
+                }
+
+                public void onToken(String prefix, String token) {
+                }
+            });
+            fail();
+        } catch (CharStreamLimitException e) {
+            assertEquals(1000, e.getLimit());
+        }
+    }
+
+    public void testCharByCharLoader() {
+        String str = newString(1000);
+        assertEquals(str, read(new CharStream(new CharByCharLoader(str))));
+        assertEquals(str, read(new CharStream(str)));
+        assertEquals("", read(new CharStream("")));
+    }
+
+    public void testEmptyBlocks() {
+        // Block loaders should not return empty blocks; the stream fails
+        // instead of polling them
+        CharStream stream = new CharStream(new ICharBlockLoader() {
+            public int read(char[] buf, int offset, int len) {
+                return 0;
+            }
+
+            public int readNext() {
+                return -1;
+            }
+        });
+        try {
+            stream.getChar();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testMarkers() {
+        String str = newString(5000);
+        CharStream stream = new CharStream(new CharByCharLoader(str));
+        stream.getChar();
+        for (int i = 0; i < 100; i++) {
+            stream.incPos();
+        }
+        Marker marker = stream.markPosition();
+        for (int i = 0; i < 3000; i++) {
+            stream.incPos();
+        }
+        assertEquals(str.substring(100, 3100), marker.getSubstring());
+        marker.close(true);
+        assertEquals(100, stream.getPointer().pos);
+        assertEquals(str.substring(100), read(stream));
+    }
+
+    public void testPositionsOff() {
+        CharStream stream = new CharStream("ab\ncd\r\nef", false);
+        Marker marker = stream.markPosition();
+        assertEquals("ab\ncd\r\nef", read(stream));
+        Pointer pointer = stream.getPointer();
+        assertEquals(9, pointer.pos);
+        assertEquals(-1, pointer.line);
+        assertEquals(-1, pointer.column);
+        assertEquals(0, marker.getPointer().pos);
+        assertEquals(-1, marker.getPointer().line);
+        marker.close(true);
+        assertEquals(0, stream.getPointer().pos);
+        assertEquals('a', stream.getChar());
+    }
+
+    public void testReset() {
+        String str = newString(3000);
+        CharStream stream = new CharStream(new CharByCharLoader(str));
+        stream.getChar();
+        Marker marker = stream.markPosition();
+        read(stream);
+        assertEquals(str, marker.getSubstring());
+        assertTrue(stream.getCapacity() > CharStream.DEFAULT_CAPACITY);
+
+        stream.reset(new SimpleCharLoader("ab\ncd"));
+        assertEquals(CharStream.DEFAULT_CAPACITY, stream.getCapacity());
+        assertEquals('a', stream.getChar());
+        assertTrue(stream.isBeginContext());
+        read(stream);
+        Pointer pointer = stream.getPointer();
+        assertEquals(5, pointer.pos);
+        assertEquals(1, pointer.line);
+        assertEquals(2, pointer.column);
+
+        CharStreamPool pool = new CharStreamPool();
+        CharStream first = pool.newStream("first");
+        CharStream second = pool.newStream("second");
+        assertNotSame(first, second);
+        pool.release(first);
+        CharStream third = pool.newStream("third");
+        assertSame(first, third);
+        StringBuilder buf = new StringBuilder();
+        third.readUntil('\0', buf);
+        assertEquals("third", buf.toString());
+
+        // Released streams keep their buffers
+        pool = new CharStreamPool(true, 4096);
+        first = pool.newStream(newString(1000));
+        int capacity = first.getCapacity();
+        assertTrue(capacity > CharStream.DEFAULT_CAPACITY);
+        pool.release(first);
+        assertEquals('\0', first.getChar());
+        assertTrue(first.isTerminated());
+        assertEquals(capacity, first.getCapacity());
+        second = pool.newStream(newString(900));
+        assertSame(first, second);
+        assertEquals(capacity, second.getCapacity());
+        // Buffers over the limit are not kept
+        pool.release(second);
+        third = pool.newStream(newString(5000));
+        pool.release(third);
+        assertNotSame(third, pool.newStream("x"));
+
+        JSONParser parser = new JSONParser();
+        for (int i = 0; i < 3; i++) {
+            final StringBuilder values = new StringBuilder();
+            parser.parse("{a:" + i + "}", new JSONListener() {
+                @Override
+                public void onValue(String value) {
+                    values.append(value);
+                }
+            });
+            assertEquals("" + i, values.toString());
+        }
+    }
+
+    public void testSlices() {
+        String str = newString(5000);
+        CharStream stream = new CharStream(new CharByCharLoader(str));
+        stream.getChar();
+        for (int i = 0; i < 1000; i++) {
+            stream.incPos();
+            if (i % 300 != 0) {
+                continue;
+            }
+            // Markers are opened at different buffer positions to check
+            // fragments wrapped around the end of the buffer
+            Marker marker = stream.markPosition();
+            int pos = stream.getPointer().pos;
+            for (int j = 0; j < 700; j++) {
+                stream.incPos();
+            }
+            String control = str.substring(pos, pos + 700);
+            Slice slice = marker.getSlice();
+            assertEquals(700, slice.length());
+            assertTrue(slice.contentEquals(control));
+            assertEquals(control.hashCode(), slice.hashCode());
+            assertEquals(control, slice.toString());
+            assertEquals(control.substring(10, 20), slice
+                .subSequence(10, 20)
+                .toString());
+            assertEquals(control.charAt(500), slice.charAt(500));
+            assertEquals(control, marker.getSubstring());
+            marker.close(true);
+        }
+    }
+
+    public void testBulkScanning() {
+        ICharMatcher letters = new ICharMatcher() {
+            public boolean match(char ch) {
+                return Character.isLetter(ch);
+            }
+        };
+        String str = "abc\ndef  123\r\nxyz;" + newString(1000) + ";";
+        CharStream stream = new CharStream(new CharByCharLoader(str));
+        stream.getChar();
+        StringBuilder buf = new StringBuilder();
+        assertEquals(7, stream.readUntil(' ', buf));
+        assertEquals("abc\ndef", buf.toString());
+        Pointer pointer = stream.getPointer();
+        assertEquals(7, pointer.pos);
+        assertEquals(1, pointer.line);
+        assertEquals(3, pointer.column);
+
+        assertEquals(2, stream.skipUntil('1', '2'));
+        assertEquals(0, stream.skipWhile(letters));
+        assertEquals(5, stream.skipUntil(letters));
+        pointer = stream.getPointer();
+        assertEquals(14, pointer.pos);
+        assertEquals(2, pointer.line);
+        assertEquals(0, pointer.column);
+
+        buf.setLength(0);
+        assertEquals(3, stream.readWhile(letters, buf));
+        assertEquals("xyz", buf.toString());
+        stream.incPos();
+        buf.setLength(0);
+        assertEquals(1100, stream.readUntil(';', buf));
+        assertEquals(str.substring(18, 1118), buf.toString());
+        stream.incPos();
+        assertTrue(stream.isTerminated());
+        assertEquals(0, stream.skipUntil(';'));
+    }
+
+    public void testTermination() {
+        CharStream stream = new CharStream("ab");
+        assertEquals('a', stream.getChar());
+        assertTrue(stream.incPos());
+        assertEquals('b', stream.getChar());
+        assertTrue(stream.incPos());
+        assertTrue(stream.isTerminated());
+        assertEquals('\0', stream.getChar());
+        assertFalse(stream.incPos());
+        assertEquals(2, stream.getPointer().pos);
+    }
+
+    public void testMarkerPositions() {
+        CharStream stream = new CharStream("ab\ncd\nef");
+        stream.getChar();
+        for (int i = 0; i < 4; i++) {
+            stream.incPos();
+        }
+        Pointer pointer = stream.getPointer();
+        assertSame(pointer, stream.getPointer());
+        Marker marker = stream.markPosition();
+        assertSame(pointer, marker.getPointer());
+        read(stream);
+        assertEquals("d\nef", marker.getSubstring());
+        marker.close(true);
+        assertEquals(pointer, stream.getPointer());
+        assertEquals(1, stream.getPointer().line);
+        assertEquals(1, stream.getPointer().column);
+        assertEquals('d', stream.getChar());
+    }
+
+    public void testPositions() {
+        CharStream stream = new CharStream("ab\ncd\r\nef");
+        read(stream);
+        Pointer pointer = stream.getPointer();
+        assertEquals(9, pointer.pos);
+        assertEquals(2, pointer.line);
+        assertEquals(2, pointer.column);
+    }
+
+}
@@ -16,13 +16,27 @@
  * ************************************************************************** */
 package org.ubimix.util.strings.parsers;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.Stack;
 
 import junit.framework.TestCase;
 
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.SimpleCharLoader;
+import org.ubimix.commons.parsers.json.IJSONDocumentListener;
 import org.ubimix.commons.parsers.json.IJSONListener;
+import org.ubimix.commons.parsers.json.IJSONValueListener;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParseException;
 import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONReader;
 import org.ubimix.commons.parsers.json.JSONSerializer;
+import org.ubimix.commons.parsers.json.JSONSymbolTable;
+import org.ubimix.commons.parsers.json.JSONValueListenerAdapter;
+import org.ubimix.commons.parsers.json.JSONWriter;
+import org.ubimix.commons.parsers.json.StrictJSONWriter;
 
 /**
  * @author kotelnikov
@@ -95,6 +109,105 @@ public class JSONParserTest extends TestCase {
         }
     }
 
+    protected static class TypedTestListener extends TestListener
+        implements
+        IJSONValueListener {
+
+        protected TypedTestListener(StringBuffer buf) {
+            super(buf);
+        }
+
+        public void onBoolean(boolean value) {
+            onValue("B:" + value);
+        }
+
+        public void onDouble(double value) {
+            onValue("D:" + value);
+        }
+
+        public void onLong(long value) {
+            onValue("L:" + value);
+        }
+
+        public void onNull() {
+            onValue("N");
+        }
+
+        public void onNumber(CharSequence value) {
+            onValue("#:" + value);
+        }
+
+        public void onString(CharSequence value) {
+            onValue("S:" + value);
+        }
+
+    }
+
+    /**
+     * Gives access to the original escaping methods of the serializer.
+     */
+    private static class LegacySerializer extends JSONSerializer {
+
+        private final StringBuffer fOut;
+
+        public LegacySerializer(StringBuffer out) {
+            fOut = out;
+        }
+
+        public String escape(String str, boolean escapeSpace) {
+            StringBuffer buf = new StringBuffer();
+            escape(str, escapeSpace, buf);
+            return buf.toString();
+        }
+
+        public boolean isQuoted(String str) {
+            return escape(str, true, new StringBuffer());
+        }
+
+        @Override
+        protected void print(String string) {
+            fOut.append(string);
+        }
+
+    }
+
+    /**
+     * Writes each document on a separate line and checks document indexes.
+     */
+    private static class DocumentWriter extends JSONWriter
+        implements
+        IJSONDocumentListener {
+
+        private int fCount;
+
+        public DocumentWriter(StringBuilder out, boolean strict) {
+            super(out, strict);
+        }
+
+        public void beginDocument(int index) {
+            assertEquals(fCount, index);
+        }
+
+        public void endDocument(int index) {
+            assertEquals(fCount++, index);
+            print('\n');
+        }
+
+    }
+
+    /**
+     * Writes documents in the strict mode.
+     */
+    private static class StrictDocumentWriter extends DocumentWriter
+        implements
+        IJSONValueListener {
+
+        public StrictDocumentWriter(StringBuilder out) {
+            super(out, true);
+        }
+
+    }
+
     /**
      * @param name
      */
@@ -145,6 +258,245 @@ public class JSONParserTest extends TestCase {
             "{<first>{<name>[(x),(y),({<first>{<name>[(x),(y)]</name>}</first>})]</name>}</first>}");
     }
 
+    public void testStrictMode() {
+        testStrictMode("{}", "{}");
+        testStrictMode(" [ ] ", "[]");
+        testStrictMode("123", "123");
+        testStrictMode(
+            "{\"a\" : [1, -0.5, 2E+2, true, false, null], \"b\":{}}",
+            "{\"a\":[1,-0.5,2E+2,true,false,null],\"b\":{}}");
+        testStrictMode(
+            "[\"\\u0041\\u00e9\\b\\/\\\\\\\"\"]",
+            "[\"A\u00e9\\b/\\\\\\\"\"]");
+
+        String[] invalid = {
+            "",
+            "{",
+            "{a:1}",
+            "{'a':1}",
+            "{\"a\" 1}",
+            "{\"a\":1,}",
+            "{\"a\":1 \"b\":2}",
+            "[1,]",
+            "[1 2]",
+            "[01]",
+            "[1.]",
+            "[.5]",
+            "[+1]",
+            "[tru]",
+            "[abc]",
+            "['a']",
+            "[\"a\\x\"]",
+            "[\"\\u12\"]",
+            "[\"a\tb\"]",
+            "[\"abc",
+            "{} x" };
+        JSONParser parser = new JSONParser(true);
+        for (String str : invalid) {
+            try {
+                parser.parse(str, new JSONListener());
+                fail("An error expected for: " + str);
+            } catch (JSONParseException e) {
+                assertNotNull(e.getPointer());
+            }
+        }
+
+        // Errors in strings are reported with their lines and columns
+        try {
+            parser.parse("{\"a\":1,\n \"b\":[1 2]}", new JSONListener());
+            fail();
+        } catch (JSONParseException e) {
+            assertEquals(1, e.getPointer().line);
+            assertEquals(8, e.getPointer().column);
+        }
+
+        // The lenient mode decodes escapes but accepts malformed ones
+        testSerialization("{x:'\\u0041\\u12z\\x'}", "{x:'Au12zx'}");
+    }
+
+    private void testStrictMode(String str, String control) {
+        JSONParser parser = new JSONParser(true);
+        assertTrue(parser.isStrict());
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out);
+        parser.parse(str, writer);
+        writer.flush();
+        assertEquals(control, out.toString());
+    }
+
+    public void testStrictSerialization() {
+        testStrictSerialization("{}", "{}");
+        testStrictSerialization("{ x : y }", "{\"x\":\"y\"}");
+        testStrictSerialization(
+            "{a:1, b:-2.5, c:true, d:null, e:'f', g:[1e3, false]}",
+            "{\"a\":1,\"b\":-2.5,\"c\":true,\"d\":null,"
+                + "\"e\":\"f\",\"g\":[1e3,false]}");
+        // The lenient serializer keeps the original text of values
+        StringBuilder lenient = new StringBuilder();
+        JSONWriter lenientWriter = new JSONWriter(lenient);
+        new JSONParser().parse(
+            "{a:123456789012345678901234, b:1e5, c:1.50, d:-0, e:null, f:}",
+            lenientWriter);
+        lenientWriter.flush();
+        assertEquals("{a:'123456789012345678901234',b:'1e5',c:'1.50',"
+            + "d:'-0',e:'null',f:''}", lenient.toString());
+
+        // Numbers keep their original text
+        testStrictSerialization(
+            "{x:[123456789012345678901234, 1.50, -0, 1e5]}",
+            "{\"x\":[123456789012345678901234,1.50,-0,1e5]}");
+        testStrictSerialization(
+            "{'it\\'s':'a\\\\b\\\"c\\nd'}",
+            "{\"it's\":\"a\\\\b\\\"c\\nd\"}");
+
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out, 2);
+        assertTrue(writer.isStrict());
+        writer.beginArray();
+        writer.beginArrayElement();
+        writer.onValue("\u0001\b\u001f\u00e9");
+        writer.endArrayElement();
+        long[] longs = { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE };
+        for (long value : longs) {
+            writer.beginArrayElement();
+            writer.onLong(value);
+            writer.endArrayElement();
+        }
+        double[] doubles = { Double.NaN, Double.POSITIVE_INFINITY, 0.5 };
+        for (double value : doubles) {
+            writer.beginArrayElement();
+            writer.onDouble(value);
+            writer.endArrayElement();
+        }
+        writer.endArray();
+        writer.flush();
+        assertEquals("[\"\\u0001\\b\\u001f\u00e9\",0,-1,"
+            + Long.MIN_VALUE
+            + ","
+            + Long.MAX_VALUE
+            + ",null,null,0.5]", out.toString());
+    }
+
+    private void testStrictSerialization(String str, String control) {
+        JSONParser parser = new JSONParser();
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out, 3);
+        parser.parse(str, writer);
+        writer.flush();
+        assertEquals(control, out.toString());
+
+        // The strict output should be stable
+        out.setLength(0);
+        parser.parse(control, writer);
+        writer.flush();
+        assertEquals(control, out.toString());
+    }
+
+    public void testSymbolTable() {
+        final List<String> names = new ArrayList<String>();
+        IJSONListener listener = new JSONListener() {
+            @Override
+            public void beginObjectProperty(String property) {
+                names.add(property);
+            }
+        };
+        JSONSymbolTable table = new JSONSymbolTable(4, 8);
+        new JSONParser(table).parse("{a:1, 'b':2, c:{a:3}}", listener);
+        new JSONParser(table).parse(
+            "{\"a\":1, b:2, c:3, d:4, e:5, verylongname:6}",
+            listener);
+        assertEquals(
+            "[a, b, c, a, a, b, c, d, e, verylongname]",
+            names.toString());
+        assertSame(names.get(0), names.get(3));
+        assertSame(names.get(0), names.get(4));
+        assertSame(names.get(1), names.get(5));
+        assertSame(names.get(2), names.get(6));
+        // The table was full when the "e" name was found, so it started a
+        // new generation with this name
+        assertEquals(1, table.size());
+        assertSame(table.getSymbol("e"), names.get(8));
+        assertNotSame(table.getSymbol("d"), names.get(7));
+        // Long symbols are always new strings
+        assertNotSame(table.getSymbol("verylongname"), names.get(9));
+        assertEquals(2, table.size());
+        table.clear();
+        assertEquals(0, table.size());
+        assertNotSame(table.getSymbol("e"), names.get(8));
+        try {
+            new JSONSymbolTable(JSONSymbolTable.MAX_SIZE_LIMIT + 1, 8);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private void testTyped(String str, String control) {
+        JSONParser parser = new JSONParser();
+        StringBuffer buf = new StringBuffer();
+        parser.parse(str, new TypedTestListener(buf));
+        assertEquals(control, buf.toString());
+    }
+
+    public void testTypedValues() {
+        testTyped("{a:1, b:-2, c:0}", "{<a>L:1</a>,<b>L:-2</b>,<c>L:0</c>}");
+        testTyped(
+            "{a:true, b:false, c:null, d}",
+            "{<a>B:true</a>,<b>B:false</b>,<c>N</c>,<d>null</d>}");
+        testTyped(
+            "{a:'1', b:\"true\", c:abc, d:''}",
+            "{<a>S:1</a>,<b>S:true</b>,<c>S:abc</c>,<d>S:</d>}");
+        testTyped(
+            "{a:1.5, b:-0.25, c:0.001, d:1234567.0, e:0.0, f:-0.0}",
+            "{<a>D:1.5</a>,<b>D:-0.25</b>,<c>D:0.001</c>,"
+                + "<d>D:1234567.0</d>,<e>D:0.0</e>,<f>D:-0.0</f>}");
+        // Numbers which are printed differently by String.valueOf are given
+        // by their text
+        testTyped(
+            "{a:1e3, b:2.5E-3, c:1.50, d:-0, e:0.0001, f:12345678.5}",
+            "{<a>#:1e3</a>,<b>#:2.5E-3</b>,<c>#:1.50</c>,<d>#:-0</d>,"
+                + "<e>#:0.0001</e>,<f>#:12345678.5</f>}");
+        testTyped(
+            "{a:0.1234567890123456, b:100000.00}",
+            "{<a>#:0.1234567890123456</a>,<b>#:100000.00</b>}");
+        testTyped(
+            "{a:9223372036854775807, b:-9223372036854775808}",
+            "{<a>L:9223372036854775807</a>,<b>L:-9223372036854775808</b>}");
+        testTyped(
+            "{a:12345678901234567890, b:-123456789012345678901234, c:1e400}",
+            "{<a>#:12345678901234567890</a>,"
+                + "<b>#:-123456789012345678901234</b>,<c>#:1e400</c>}");
+        testTyped(
+            "{a:007, b:1., c:-, d:1e, e:1x}",
+            "{<a>S:007</a>,<b>S:1.</b>,<c>S:-</c>,<d>S:1e</d>,<e>S:1x</e>}");
+        testTyped(
+            "{x: [1, 'a', [true, null]]}",
+            "{<x>[(L:1),(S:a),([(B:true),(N)])]</x>}");
+
+        // Existing listeners receive the same values through the adapter
+        String str = "{a:1, b:true, c:null, d:x, e:1.5, f:1e5, g:1.50, h:-0, "
+            + "i:123456789012345678901234, j:'null', k}";
+        StringBuffer control = new StringBuffer();
+        new JSONParser().parse(str, new TestListener(control) {
+            @Override
+            public void onValue(String value) {
+                super.onValue(value != null ? "'" + value + "'" : "-");
+            }
+        });
+        assertEquals("{<a>'1'</a>,<b>'true'</b>,<c>'null'</c>,<d>'x'</d>,"
+            + "<e>'1.5'</e>,<f>'1e5'</f>,<g>'1.50'</g>,<h>'-0'</h>,"
+            + "<i>'123456789012345678901234'</i>,<j>'null'</j>,<k>-</k>}", control
+            .toString());
+        StringBuffer buf = new StringBuffer();
+        new JSONParser().parse(str, new JSONValueListenerAdapter(
+            new TestListener(buf) {
+                @Override
+                public void onValue(String value) {
+                    super.onValue(value != null ? "'" + value + "'" : "-");
+                }
+            }));
+        assertEquals(control.toString(), buf.toString());
+    }
+
     private void test(String str, String control) {
         JSONParser parser = new JSONParser();
         final StringBuffer buf = new StringBuffer();
@@ -153,6 +505,91 @@ public class JSONParserTest extends TestCase {
         assertEquals(control, buf.toString());
     }
 
+    public void testDocumentStream() {
+        testDocumentStream(
+            false,
+            "{a:1}\n{b:2}\n[1,2]\n'x' 5 ,] {c:3}",
+            "{a:'1'}\n{b:'2'}\n['1','2']\n'x'\n'5'\n{c:'3'}\n");
+        testDocumentStream(
+            true,
+            "{\"a\":1}\n{\"b\":[true]}{}\r\n\"s\" 2.5 null\n",
+            "{\"a\":1}\n{\"b\":[true]}\n{}\n\"s\"\n2.5\nnull\n");
+        testDocumentStream(true, " \n ", "");
+        try {
+            new JSONParser(true).parseStream("{} ,{}", new JSONListener());
+            fail();
+        } catch (JSONParseException e) {
+        }
+
+        // Only the current document is kept in the stream buffer
+        StringBuilder buf = new StringBuilder();
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            buf.append("{\"id\":").append(i).append(",\"v\":[\"x\"]}\n");
+        }
+        CharStream stream = new CharStream(
+            new SimpleCharLoader(buf.toString()),
+            64,
+            1024);
+        final int[] counter = { 0 };
+        JSONListener listener = new JSONListener() {
+            @Override
+            public void beginObject() {
+                counter[0]++;
+            }
+        };
+        assertEquals(count, new JSONParser(true).parseStream(stream, listener));
+        assertEquals(count, counter[0]);
+        assertTrue(stream.getCapacity() <= 1024);
+    }
+
+    private void testDocumentStream(boolean strict, String str, String control) {
+        StringBuilder out = new StringBuilder();
+        DocumentWriter writer = strict
+            ? new StrictDocumentWriter(out)
+            : new DocumentWriter(out, false);
+        int count = new JSONParser(strict).parseStream(str, writer);
+        writer.flush();
+        assertEquals(control, out.toString());
+        assertEquals(writer.fCount, count);
+    }
+
+    public void testDoubles() {
+        Random random = new Random(123);
+        for (int i = 0; i < 10000; i++) {
+            String str;
+            switch (i % 4) {
+                case 0:
+                    str = Double.toString(random.nextDouble());
+                    break;
+                case 1:
+                    str = Double.toString(random.nextGaussian() * 1e6);
+                    break;
+                case 2:
+                    str = random.nextInt(100000) + "." + random.nextInt(1000);
+                    break;
+                default:
+                    str = random.nextInt(1000)
+                        + "e"
+                        + (random.nextInt(60) - 30);
+                    break;
+            }
+            // Typed values are printed back without changes
+            StringBuffer buf = new StringBuffer();
+            new JSONParser().parse("{x:" + str + "}", new TypedTestListener(
+                buf));
+            String result = buf.toString();
+            if (!result.equals("{<x>#:" + str + "</x>}")) {
+                assertEquals("{<x>D:" + str + "</x>}", result);
+            }
+            double value = Double.parseDouble(str);
+            // Values of numbers given by their text are the same
+            JSONReader reader = new JSONReader(str);
+            assertEquals(JSONReader.Token.DOUBLE, reader.nextToken());
+            assertEquals(value, reader.getDouble());
+        }
+    }
+
     public void testPrintQuery() {
         String str = "{\"ResultSet\":{\"totalResultsAvailable\":\"415870\",\"totalResultsReturned\":2,\"firstResultPosition\":1,\"Result\":[{\"Title\":\"potato.jpg\",\"Summary\":\"Exclude Chit Chat \\u2014 The Introducer at 8:26 pm on Saturday, October 21, 2006 The OFT transferring PPI to the Competition Commission could be seen as getting rid of a Hot Potato - but it was a struggle to find a picture of a potato that looked  Hot  I've had a first\",\"Url\":\"http:\\/\\/www.we-introduce-you.co.uk\\/theintroducer\\/wp-content\\/potato.jpg\",\"ClickUrl\":\"http:\\/\\/www.we-introduce-you.co.uk\\/theintroducer\\/wp-content\\/potato.jpg\",\"RefererUrl\":\"http:\\/\\/www.we-introduce-you.co.uk\\/theintroducer\\/90_the-hot-potato-of-payment-protection-insurance\",\"FileSize\":5632,\"FileFormat\":\"jpeg\",\"Height\":\"225\",\"Width\":\"225\",\"Thumbnail\":{\"Url\":\"http:\\/\\/sp1.yt-thm-a01.yimg.com\\/image\\/25\\/m3\\/2697440748\",\"Height\":\"130\",\"Width\":\"130\"}},{\"Title\":\"Long_White_Potato_826.JPG\",\"Summary\":\"Fingerling_Potato_65..  04-Jun-2001 10:07 35k Idaho_Russet_Potato_..  04-Jun-2001 10:07 24k Long_White_Potato_82..  04-Jun-2001 10:07 29k New_Potato_661.JPG 04-Jun-2001 10:07 33k\",\"Url\":\"http:\\/\\/www.gothamstudio.com\\/images\\/Vegetables\\/Potatos\\/Long_White_Potato_826.JPG\",\"ClickUrl\":\"http:\\/\\/www.gothamstudio.com\\/images\\/Vegetables\\/Potatos\\/Long_White_Potato_826.JPG\",\"RefererUrl\":\"http:\\/\\/www.gothamstudio.com\\/images\\/Vegetables\\/Potatos\",\"FileSize\":29184,\"FileFormat\":\"jpeg\",\"Height\":\"342\",\"Width\":\"504\",\"Thumbnail\":{\"Url\":\"http:\\/\\/sp1.yt-thm-a01.yimg.com\\/image\\/25\\/m4\\/2958963693\",\"Height\":\"98\",\"Width\":\"145\"}}]}}";
         JSONParser parser = new JSONParser();
@@ -225,6 +662,46 @@ public class JSONParserTest extends TestCase {
         buf.delete(0, buf.length());
         parser.parse(test, serializer);
         assertEquals(control, buf.toString());
+
+        // A small buffer is used to check chunked writing
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out, 3);
+        parser.parse(str, writer);
+        writer.flush();
+        assertEquals(control, out.toString());
+    }
+
+    public void testWriterEscaping() {
+        Random random = new Random(321);
+        String chars = " \t\n\r\f\u0001\u001f'\":;+-/\\=!abcXYZ019#<>\u00e9\u20ac";
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder str = new StringBuilder();
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                str.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            final StringBuffer legacy = new StringBuffer();
+            LegacySerializer serializer = new LegacySerializer(legacy);
+            String property = str.toString();
+            String escaped = serializer.escape(property, true);
+            String control = "{"
+                + (serializer.isQuoted(property) ? "'" + escaped + "'" : escaped)
+                + ":'"
+                + serializer.escape(property, false)
+                + "'}";
+
+            StringBuilder out = new StringBuilder();
+            JSONWriter writer = new JSONWriter(out, 1 + random.nextInt(8));
+            for (JSONSerializer s : new JSONSerializer[] { serializer, writer }) {
+                s.beginObject();
+                s.beginObjectProperty(property);
+                s.onValue(property);
+                s.endObjectProperty(property);
+                s.endObject();
+            }
+            writer.flush();
+            assertEquals(control, legacy.toString());
+            assertEquals(control, out.toString());
+        }
     }
 
 }
@@ -0,0 +1,186 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.CharStream.ICharLoader;
+import org.ubimix.commons.parsers.io.ChannelCharLoader;
+import org.ubimix.commons.parsers.io.MappedFileCharLoader;
+import org.ubimix.commons.parsers.io.ReaderCharLoader;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONSerializer;
+
+/**
+ * @author kotelnikov
+ */
+public class CharLoaderTest extends TestCase {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static String newString(int len) {
+        StringBuilder buf = new StringBuilder();
+        String alphabet = "abcабв€\uD83D\uDE00 ";
+        for (int i = 0; i < len; i++) {
+            buf.append(alphabet.charAt(i % alphabet.length()));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @param name
+     */
+    public CharLoaderTest(String name) {
+        super(name);
+    }
+
+    private File newFile(byte[] bytes) throws Exception {
+        File file = File.createTempFile("chars", ".txt");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private File newFile(String str, Charset charset) throws Exception {
+        return newFile(str.getBytes(charset));
+    }
+
+    private String read(ICharLoader loader) {
+        CharStream stream = new CharStream(loader);
+        StringBuilder buf = new StringBuilder();
+        for (char ch = stream.getChar(); !stream.isTerminated(); stream
+            .incPos(), ch = stream.getChar()) {
+            buf.append(ch);
+        }
+        return buf.toString();
+    }
+
+    public void testChannelLoader() throws Exception {
+        String str = newString(10000);
+        byte[] bytes = str.getBytes(UTF8);
+        assertEquals(str, read(new ChannelCharLoader(
+            new ByteArrayInputStream(bytes),
+            UTF8)));
+        // A small buffer splits multi-byte sequences between reads
+        assertEquals(str, read(new ChannelCharLoader(Channels
+            .newChannel(new ByteArrayInputStream(bytes)), UTF8, 17)));
+        assertEquals("", read(new ChannelCharLoader(new ByteArrayInputStream(
+            new byte[0]), UTF8)));
+    }
+
+    public void testJSONParsing() throws Exception {
+        String str = "{ a : 'абв', b : [ x, y ] }";
+        final StringBuilder buf = new StringBuilder();
+        JSONSerializer serializer = new JSONSerializer() {
+            @Override
+            protected void print(String string) {
+                buf.append(string);
+            }
+        };
+        ChannelCharLoader loader = new ChannelCharLoader(
+            Channels.newChannel(new ByteArrayInputStream(str.getBytes(UTF8))),
+            UTF8,
+            16);
+        new JSONParser().parse(new CharStream(loader), serializer);
+        assertEquals("{a:'абв',b:['x','y']}", buf.toString());
+    }
+
+    public void testMappedFileLoader() throws Exception {
+        String str = newString(10000);
+        File file = newFile(str, UTF8);
+        MappedFileCharLoader loader = new MappedFileCharLoader(file, UTF8);
+        try {
+            assertEquals(str, read(loader));
+        } finally {
+            loader.close();
+        }
+        // Small windows split multi-byte sequences between mappings
+        loader = new MappedFileCharLoader(new FileInputStream(file)
+            .getChannel(), UTF8, 13);
+        try {
+            assertEquals(str, read(loader));
+        } finally {
+            loader.close();
+        }
+
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        str = "abc\u00e9\u00e8\u00ff xyz";
+        file = newFile(str, latin1);
+        loader = new MappedFileCharLoader(file, latin1);
+        try {
+            assertEquals(str, read(loader));
+        } finally {
+            loader.close();
+        }
+
+        file = newFile("", UTF8);
+        loader = new MappedFileCharLoader(file, UTF8);
+        try {
+            assertEquals("", read(loader));
+        } finally {
+            loader.close();
+        }
+
+        // Malformed sequences are replaced as by the decoder of the JDK;
+        // surrogate pairs are returned one character per call
+        byte[] bytes = { 'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82,
+            'c', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd', (byte) 0xF0,
+            (byte) 0x9F, (byte) 0x98, (byte) 0x80, (byte) 0xC0, (byte) 0xAF,
+            (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0xFF,
+            'e', (byte) 0xF0, (byte) 0x9F };
+        file = newFile(bytes);
+        loader = new MappedFileCharLoader(new FileInputStream(file)
+            .getChannel(), UTF8, 8);
+        try {
+            StringBuilder buf = new StringBuilder();
+            for (int ch = loader.readNext(); ch >= 0; ch = loader.readNext()) {
+                buf.append((char) ch);
+            }
+            assertEquals(new String(bytes, UTF8), buf.toString());
+        } finally {
+            loader.close();
+        }
+
+        // The charset is checked before the file is opened
+        file = new File(file.getParentFile(), file.getName() + ".missing");
+        try {
+            new MappedFileCharLoader(file, Charset.forName("UTF-16"));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testReaderLoader() throws Exception {
+        String str = newString(10000);
+        assertEquals(str, read(new ReaderCharLoader(new StringReader(str))));
+    }
+
+}
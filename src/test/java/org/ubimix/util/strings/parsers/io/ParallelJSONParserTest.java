@@ -0,0 +1,207 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.io;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.CharStreamLimitException;
+import org.ubimix.commons.parsers.io.ParallelJSONParser;
+import org.ubimix.commons.parsers.io.ParallelJSONParser.IChunkHandler;
+import org.ubimix.commons.parsers.io.ParallelJSONParser.IChunkListener;
+import org.ubimix.commons.parsers.io.ReaderCharLoader;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParseException;
+
+/**
+ * @author kotelnikov
+ */
+public class ParallelJSONParserTest extends TestCase {
+
+    /**
+     * Collects identifiers of records and checks the number of chunks in
+     * flight.
+     */
+    private static class IdCollector implements IChunkHandler<List<Integer>> {
+
+        private List<Integer> fChunks = new ArrayList<Integer>();
+
+        private List<Integer> fIds = new ArrayList<Integer>();
+
+        private AtomicInteger fInFlight = new AtomicInteger();
+
+        private int fMaxInFlight;
+
+        public IChunkListener<List<Integer>> newListener() {
+            fInFlight.incrementAndGet();
+            return new IdListener();
+        }
+
+        public void onResult(int index, List<Integer> result) {
+            fMaxInFlight = Math.max(fMaxInFlight, fInFlight.getAndDecrement());
+            fChunks.add(index);
+            fIds.addAll(result);
+        }
+
+    }
+
+    private static class IdListener extends JSONListener
+        implements
+        IChunkListener<List<Integer>> {
+
+        private List<Integer> fIds = new ArrayList<Integer>();
+
+        private String fProperty;
+
+        @Override
+        public void beginObjectProperty(String property) {
+            fProperty = property;
+        }
+
+        public List<Integer> getResult() {
+            return fIds;
+        }
+
+        @Override
+        public void onValue(String value) {
+            if ("id".equals(fProperty)) {
+                fIds.add(Integer.parseInt(value));
+            }
+            fProperty = null;
+        }
+
+    }
+
+    private static String newRecords(int count) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            buf.append("{\"id\":").append(i).append(",\"text\":\"");
+            // Some records are longer than one chunk
+            int len = i % 100 == 0 ? 300 : i % 7;
+            for (int j = 0; j < len; j++) {
+                buf.append((char) ('a' + j % 26));
+            }
+            buf.append("\"}\n");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @param name
+     */
+    public ParallelJSONParserTest(String name) {
+        super(name);
+    }
+
+    private IdCollector parse(String str, boolean ordered) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ParallelJSONParser parser = new ParallelJSONParser(
+                executor,
+                ordered,
+                128,
+                3,
+                true,
+                null);
+            IdCollector collector = new IdCollector();
+            int count = parser.parse(
+                new ReaderCharLoader(new StringReader(str)),
+                collector);
+            assertEquals(count, collector.fChunks.size());
+            assertTrue(collector.fMaxInFlight <= 3);
+            return collector;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testErrors() throws Exception {
+        String str = newRecords(100) + "{\"id\":1,}\n" + newRecords(100);
+        for (boolean ordered : new boolean[] { true, false }) {
+            try {
+                parse(str, ordered);
+                fail();
+            } catch (JSONParseException e) {
+            }
+        }
+
+        // Records longer than the limit are rejected
+        StringBuilder buf = new StringBuilder(newRecords(10));
+        int offset = buf.length();
+        buf.append("{\"id\":1, \"title\":\"");
+        for (int i = 0; i < 10000; i++) {
+            buf.append('x');
+        }
+        buf.append("\"}\n");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ParallelJSONParser parser = new ParallelJSONParser(
+                executor,
+                true,
+                128,
+                3,
+                1000,
+                true,
+                null);
+            parser.parse(
+                new ReaderCharLoader(new StringReader(buf.toString())),
+                new IdCollector());
+            fail();
+        } catch (CharStreamLimitException e) {
+            assertEquals(1000, e.getLimit());
+            assertTrue(e.getPointer().pos > offset + 1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testOrdered() throws Exception {
+        int count = 5000;
+        IdCollector collector = parse(newRecords(count), true);
+        for (int i = 0; i < collector.fChunks.size(); i++) {
+            assertEquals(i, collector.fChunks.get(i).intValue());
+        }
+        assertEquals(count, collector.fIds.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, collector.fIds.get(i).intValue());
+        }
+    }
+
+    public void testUnordered() throws Exception {
+        int count = 5000;
+        IdCollector collector = parse(newRecords(count) + "{\"id\":"
+            + count
+            + "}", false);
+        Collections.sort(collector.fChunks);
+        for (int i = 0; i < collector.fChunks.size(); i++) {
+            assertEquals(i, collector.fChunks.get(i).intValue());
+        }
+        Collections.sort(collector.fIds);
+        assertEquals(count + 1, collector.fIds.size());
+        for (int i = 0; i <= count; i++) {
+            assertEquals(i, collector.fIds.get(i).intValue());
+        }
+    }
+
+}
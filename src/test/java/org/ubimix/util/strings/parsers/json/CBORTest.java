@@ -0,0 +1,280 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.json;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.json.CBORParser;
+import org.ubimix.commons.parsers.json.CBORWriter;
+import org.ubimix.commons.parsers.json.JSONHelper;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.StrictJSONWriter;
+
+/**
+ * @author kotelnikov
+ */
+public class CBORTest extends TestCase {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static byte[] toBytes(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(
+                hex.substring(i * 2, i * 2 + 2),
+                16);
+        }
+        return result;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder buf = new StringBuilder();
+        for (byte b : bytes) {
+            buf.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return buf.toString();
+    }
+
+    public CBORTest(String name) {
+        super(name);
+    }
+
+    private String decode(byte[] bytes) {
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out);
+        assertEquals(bytes.length, new CBORParser().parse(bytes, writer));
+        writer.flush();
+        return out.toString();
+    }
+
+    private byte[] encode(String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out, 16);
+        new JSONParser(true).parse(json, writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private void testDecode(String hex, String control) {
+        assertEquals(control, decode(toBytes(hex)));
+    }
+
+    public void testDecoding() {
+        // Examples from the Appendix A of RFC 8949
+        testDecode("00", "0");
+        testDecode("1903e8", "1000");
+        testDecode("1bffffffffffffffff", "18446744073709551615");
+        testDecode("c249010000000000000000", "18446744073709551616");
+        testDecode("3bffffffffffffffff", "-18446744073709551616");
+        testDecode("c349010000000000000000", "-18446744073709551617");
+        testDecode("3903e7", "-1000");
+        testDecode("f93c00", "1.0");
+        testDecode("f97bff", "65504.0");
+        testDecode("f90001", "5.9604644775390625E-8");
+        testDecode("f9c400", "-4.0");
+        testDecode("fbc010666666666666", "-4.1");
+        testDecode("f7", "null");
+        testDecode("4401020304", "\"AQIDBA\"");
+        testDecode("5f42010243030405ff", "\"AQIDBAU\"");
+        testDecode("7f657374726561646d696e67ff", "\"streaming\"");
+        testDecode("c074323031332d30332d32315432303a30343a30305a",
+            "\"2013-03-21T20:04:00Z\"");
+        testDecode("83010203", "[1,2,3]");
+        testDecode("8301820203820405", "[1,[2,3],[4,5]]");
+        testDecode("9f018202039f0405ffff", "[1,[2,3],[4,5]]");
+        testDecode("a201020304", "{\"1\":2,\"3\":4}");
+        testDecode("a26161016162820203", "{\"a\":1,\"b\":[2,3]}");
+        testDecode("bf6346756ef563416d7421ff", "{\"Fun\":true,\"Amt\":-2}");
+    }
+
+    private void testEncode(String json, String hex) {
+        assertEquals(json, hex, toHex(encode(json)));
+    }
+
+    public void testEncoding() {
+        // Examples from the Appendix A of RFC 8949
+        testEncode("0", "00");
+        testEncode("23", "17");
+        testEncode("24", "1818");
+        testEncode("1000", "1903e8");
+        testEncode("1000000", "1a000f4240");
+        testEncode("1000000000000", "1b000000e8d4a51000");
+        testEncode("-1", "20");
+        testEncode("-1000", "3903e7");
+        testEncode("18446744073709551616", "c249010000000000000000");
+        testEncode("-18446744073709551617", "c349010000000000000000");
+        testEncode("1.1", "fb3ff199999999999a");
+        testEncode("100000.0", "fa47c35000");
+        testEncode("true", "f5");
+        testEncode("null", "f6");
+        testEncode("\"\"", "60");
+        testEncode("\"IETF\"", "6449455446");
+        testEncode("\"\\u00fc\"", "62c3bc");
+        testEncode("\"\\u6c34\"", "63e6b0b4");
+        testEncode("\"\\ud800\\udd51\"", "64f0908591");
+        testEncode("{\"a\":1, \"b\":[2, 3]}", "bf61610161629f0203ffff");
+    }
+
+    public void testMissingValues() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out);
+        new JSONParser().parse("{a, b:}", writer);
+        writer.flush();
+        // The lenient parser gives an empty string for the "b" property
+        assertEquals("bf6161f7616260ff", toHex(out.toByteArray()));
+
+        // Plain listeners get the same values as from the JSONParser
+        final StringBuilder buf = new StringBuilder();
+        JSONListener listener = new JSONListener() {
+            @Override
+            public void onValue(String value) {
+                buf.append('<').append(value != null ? value : "-").append('>');
+            }
+        };
+        new CBORParser().parse(toBytes("9f20f6f7ff"), listener);
+        assertEquals("<-1><null><->", buf.toString());
+    }
+
+    public void testErrors() {
+        String[] invalid = {
+            "",
+            "19",
+            "62c3",
+            "9f01",
+            "ff",
+            "8201ff",
+            "1c",
+            "bf8001ff",
+            "5f6161ff",
+            "f8" };
+        for (String hex : invalid) {
+            try {
+                new CBORParser().parse(toBytes(hex), new JSONListener());
+                fail(hex);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+
+        // Deeply nested arrays and tags are rejected without stack overflow
+        for (int head : new int[] { 0x81, 0xc1 }) {
+            byte[] bytes = new byte[100001];
+            Arrays.fill(bytes, (byte) head);
+            bytes[bytes.length - 1] = 1;
+            try {
+                new CBORParser().parse(bytes, new JSONListener());
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("Too deep nesting"));
+            }
+        }
+        byte[] bytes = new byte[CBORParser.MAX_DEPTH];
+        Arrays.fill(bytes, (byte) 0x81);
+        bytes[bytes.length - 1] = 1;
+        assertEquals(bytes.length, new CBORParser().parse(
+            bytes,
+            new JSONListener()));
+    }
+
+    public void testHelper() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out);
+        JSONHelper helper = new JSONHelper(writer);
+        helper.beginObject();
+        helper.addProperty("id", 7);
+        helper.addProperty("ratio", 0.5);
+        helper.addProperty("visible", true);
+        helper.addProperty("title", "Hello, world!");
+        helper.beginProperty("tags");
+        helper.beginArray();
+        helper.addArrayValue("a", "b");
+        helper.end();
+        helper.end();
+        helper.end();
+        writer.flush();
+        assertEquals(
+            "{\"id\":7,\"ratio\":0.5,\"visible\":true,"
+                + "\"title\":\"Hello, world!\",\"tags\":[\"a\",\"b\"]}",
+            decode(out.toByteArray()));
+    }
+
+    public void testMalformedText() throws Exception {
+        // Malformed sequences are replaced as by the decoder of the JDK
+        byte[] bytes = { 'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82,
+            'c', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd', (byte) 0xF0,
+            (byte) 0x9F, (byte) 0x98, (byte) 0x80, (byte) 0xC0, (byte) 0xAF,
+            (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0xFF,
+            'e', (byte) 0xF0, (byte) 0x9F };
+        byte[] item = new byte[bytes.length + 2];
+        item[0] = 0x78;
+        item[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, item, 2, bytes.length);
+        final StringBuilder buf = new StringBuilder();
+        new CBORParser().parse(item, new JSONListener() {
+            @Override
+            public void onValue(String value) {
+                buf.append(value);
+            }
+        });
+        assertEquals(new String(bytes, "UTF-8"), buf.toString());
+
+        // Unpaired surrogates are encoded as replacement characters
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CBORWriter writer = new CBORWriter(out);
+        writer.onValue("a\ud800b\udc00");
+        writer.flush();
+        assertEquals("6861efbfbd62efbfbd", toHex(out.toByteArray()));
+    }
+
+    public void testRoundTrip() {
+        String[] docs = {
+            "{}",
+            "{ \"a\" : {\"b\":\"B\", \"c\" : \"C\"   }, \"d\":[[], {}, [1, [2]]] }",
+            "{\"a\":1, \"b\":-2500.0, \"c\":true, \"d\":null, \"e\":0.1, \"f\":-9223372036854775808}",
+            "[18446744073709551615, 123456789012345678901234, -98765432109876543210]",
+            "{\"\u043a\u043b\u044e\u0447\":\"\u0437\u043d\u0430\u0447\u0435\u043d\u0438\u0435\", \"x\":\"\ud83d\ude00\\n\\u0001\"}",
+            "[1, 4294967296, -4294967297, 1.0E300, \"a long string value which does not fit in the buffer\"]" };
+        for (String doc : docs) {
+            StringBuilder out = new StringBuilder();
+            StrictJSONWriter writer = new StrictJSONWriter(out);
+            new JSONParser(true).parse(doc, writer);
+            writer.flush();
+            assertEquals(doc, out.toString(), decode(encode(doc)));
+        }
+    }
+
+    public void testSequence() {
+        byte[] bytes = toBytes("016161616201");
+        CBORParser parser = new CBORParser();
+        final StringBuilder buf = new StringBuilder();
+        JSONListener listener = new JSONListener() {
+            @Override
+            public void onValue(String value) {
+                buf.append('<').append(value).append('>');
+            }
+        };
+        int pos = 0;
+        while (pos < bytes.length) {
+            pos += parser.parse(bytes, pos, bytes.length - pos, listener);
+        }
+        assertEquals("<1><a><b><1>", buf.toString());
+    }
+
+}
@@ -23,6 +23,7 @@ import org.ubimix.commons.parsers.json.IJSONListener;
 import org.ubimix.commons.parsers.json.JSONHelper;
 import org.ubimix.commons.parsers.json.JSONParser;
 import org.ubimix.commons.parsers.json.JSONSerializer;
+import org.ubimix.commons.parsers.json.StrictJSONWriter;
 
 /**
  * @author kotelnikov
@@ -117,4 +118,45 @@ public class JSONHelperTest extends TestCase {
             + "", buf.toString());
     }
 
+    public void testTypedProperties() {
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out);
+        JSONHelper helper = new JSONHelper(writer);
+        for (int i = 0; i < 2; i++) {
+            helper.beginObject();
+            helper.addProperty("a", 1L);
+            helper.addProperty("b", 0.5);
+            helper.addProperty("c", true);
+            helper.addProperty("d", "x");
+            helper.beginProperty("e");
+            helper.end();
+            helper.beginProperty("f");
+            helper.beginArray();
+            for (int j = 0; j < 20; j++) {
+                helper.beginArray();
+            }
+            for (int j = 0; j < 20; j++) {
+                helper.end();
+            }
+            helper.end();
+            helper.end();
+            helper.end();
+        }
+        writer.flush();
+        String control = "{\"a\":1,\"b\":0.5,\"c\":true,\"d\":\"x\","
+            + "\"e\":null,\"f\":[[[[[[[[[[[[[[[[[[[[[]]]]]]]]]]]]]]]]]]]]]}";
+        assertEquals(control + control, out.toString());
+
+        try {
+            helper.end();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        try {
+            helper.addProperty("a", 1L);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
 }
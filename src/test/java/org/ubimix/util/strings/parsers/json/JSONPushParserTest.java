@@ -0,0 +1,173 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.CharStreamLimitException;
+import org.ubimix.commons.parsers.io.JSONPushDecoder;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONPushParser;
+import org.ubimix.commons.parsers.json.JSONWriter;
+import org.ubimix.commons.parsers.json.StrictJSONWriter;
+
+/**
+ * @author kotelnikov
+ */
+public class JSONPushParserTest extends TestCase {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * @param name
+     */
+    public JSONPushParserTest(String name) {
+        super(name);
+    }
+
+    private String parse(String str) {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        new JSONParser().parseStream(str, writer);
+        writer.flush();
+        return out.toString();
+    }
+
+    private String push(String str, Random random) {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        JSONPushParser parser = new JSONPushParser(writer);
+        char[] array = str.toCharArray();
+        int pos = 0;
+        while (pos < array.length) {
+            int len = Math.min(array.length - pos, 1 + random.nextInt(5));
+            parser.feed(array, pos, len);
+            pos += len;
+        }
+        parser.endOfInput();
+        writer.flush();
+        return out.toString();
+    }
+
+    public void testBytes() {
+        String str = "{\"k\":\"é€😀\", x:['аб']}";
+        String control = parse(str);
+        byte[] bytes = str.getBytes(UTF8);
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            StringBuilder out = new StringBuilder();
+            JSONWriter writer = new JSONWriter(out);
+            JSONPushDecoder decoder = new JSONPushDecoder(
+                new JSONPushParser(writer),
+                UTF8,
+                2);
+            int pos = 0;
+            while (pos < bytes.length) {
+                int len = Math.min(bytes.length - pos, 1 + random.nextInt(3));
+                decoder.feed(ByteBuffer.wrap(bytes, pos, len));
+                pos += len;
+            }
+            decoder.endOfInput();
+            writer.flush();
+            assertEquals(control, out.toString());
+        }
+    }
+
+    public void testFragments() {
+        String[] docs = {
+            "{}",
+            "  { x : y    }    ",
+            "  { x :   }    ",
+            "{a, b:}",
+            "{ x : [ A,  B, C]   }",
+            "{ a : {b:B, \"c\" : 'C'   } }",
+            "{x:'a\\nb\\u0041\\u12z\\'\\\\'}",
+            "{a:1, b:-2.5e3, c:true, d:null, e:007, f:[1,[2,[3]]]}",
+            "{a:1}\n[1,2] 'x' 5 ,] {c:3}",
+            "{'rdf:RDF':[{'rdf:id':'toto:model'},{name:'NY'}]}",
+            "{a:[1,{b:'c",
+            "[1, 2",
+            "{a:'x\\u00" };
+        Random random = new Random(123);
+        for (String doc : docs) {
+            String control = parse(doc);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(doc, control, push(doc, random));
+            }
+        }
+    }
+
+    public void testReuse() {
+        StringBuilder out = new StringBuilder();
+        StrictJSONWriter writer = new StrictJSONWriter(out);
+        JSONPushParser parser = new JSONPushParser(writer);
+        parser.feed("{\"a\":[1,");
+        assertEquals(2, parser.getDepth());
+        parser.feed("2]}");
+        assertEquals(0, parser.getDepth());
+        parser.feed("{\"b\":");
+        parser.endOfInput();
+        assertEquals(0, parser.getDepth());
+        writer.flush();
+        assertEquals("{\"a\":[1,2]}{\"b\":\"\"}", out.toString());
+    }
+
+    public void testTokenLength() {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        JSONPushParser parser = new JSONPushParser(writer, null, 10);
+        parser.feed("{a:'0123456789', b:");
+        parser.feed("01234");
+        parser.feed("56789}");
+        parser.endOfInput();
+        writer.flush();
+        assertEquals("{a:'0123456789',b:'0123456789'}", out.toString());
+
+        // Tokens split between fragments and escaped characters are counted
+        String[][] docs = {
+            { "{a:'0123456789X'}" },
+            { "{a:", "012345", "6789X}" },
+            { "{'0123\\n", "\\n\\u0041", "\\t\\t\\t\\t':1}" } };
+        for (String[] fragments : docs) {
+            parser = new JSONPushParser(new JSONListener(), null, 10);
+            try {
+                for (String fragment : fragments) {
+                    parser.feed(fragment);
+                }
+                fail();
+            } catch (CharStreamLimitException e) {
+                assertEquals(10, e.getLimit());
+            }
+        }
+        int limit = JSONPushParser.DEFAULT_MAX_TOKEN_LENGTH;
+        try {
+            new JSONPushParser(new JSONListener()).feed("{a:'"
+                + new String(new char[limit + 1])
+                + "'}");
+            fail();
+        } catch (CharStreamLimitException e) {
+            // The position of the closing quote
+            assertEquals(limit + 5, e.getPointer().pos);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.json;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.CharStream;
+import org.ubimix.commons.parsers.json.JSONReader;
+import org.ubimix.commons.parsers.json.JSONReader.Token;
+import org.ubimix.commons.parsers.json.JSONSymbolTable;
+
+/**
+ * @author kotelnikov
+ */
+public class JSONReaderTest extends TestCase {
+
+    public JSONReaderTest(String name) {
+        super(name);
+    }
+
+    private String read(JSONReader reader) {
+        StringBuilder buf = new StringBuilder();
+        for (Token token = reader.nextToken(); token != Token.END; token = reader
+            .nextToken()) {
+            switch (token) {
+                case BEGIN_OBJECT:
+                    buf.append("{");
+                    break;
+                case END_OBJECT:
+                    buf.append("}");
+                    break;
+                case BEGIN_ARRAY:
+                    buf.append("[");
+                    break;
+                case END_ARRAY:
+                    buf.append("]");
+                    break;
+                case PROPERTY:
+                    buf.append("<").append(reader.getString()).append(">");
+                    break;
+                case LONG:
+                    buf.append("(L:").append(reader.getLong()).append(")");
+                    break;
+                case DOUBLE:
+                    buf.append("(D:").append(reader.getDouble()).append(")");
+                    break;
+                case BOOLEAN:
+                    buf.append("(B:").append(reader.getBoolean()).append(")");
+                    break;
+                case NULL:
+                    buf.append("(N)");
+                    break;
+                default:
+                    buf.append("(S:").append(reader.getText()).append(")");
+                    break;
+            }
+        }
+        return buf.toString();
+    }
+
+    public void testLenientSyntax() {
+        test("{a:A, 'b':\"B\", c}", "{<a>(S:A)<b>(S:B)<c>(N)}");
+        test("{ x: ", "{<x>(S:)}");
+        test("{ x: [ y ", "{<x>[(S:y)]}");
+        test("{ x: [ y, } ] }", "{<x>[(S:y)]}");
+        test("{ x: 'a\\nb\\'c' }", "{<x>(S:a\nb'c)}");
+        test("  ", "");
+        test("[1, [], {}]", "[(L:1)[]{}]");
+        test("abc", "(S:abc)");
+    }
+
+    public void testSkipChildren() {
+        JSONReader reader = new JSONReader(
+            "{a:{b:[1, 'x]y', {c:'}'}], d:2}, e:[3, 4], f:5}");
+        assertEquals(Token.BEGIN_OBJECT, reader.nextToken());
+        assertEquals(Token.PROPERTY, reader.nextToken());
+        assertEquals("a", reader.getString());
+        assertEquals(Token.BEGIN_OBJECT, reader.nextToken());
+        assertEquals(2, reader.getDepth());
+        reader.skipChildren();
+        assertEquals(Token.END_OBJECT, reader.getToken());
+        assertEquals(1, reader.getDepth());
+        assertEquals(Token.PROPERTY, reader.nextToken());
+        assertEquals("e", reader.getString());
+        assertEquals(Token.BEGIN_ARRAY, reader.nextToken());
+        assertEquals(Token.LONG, reader.nextToken());
+        assertEquals(3, reader.getLong());
+        reader.skipChildren();
+        assertEquals(Token.LONG, reader.getToken());
+        assertEquals(Token.LONG, reader.nextToken());
+        assertEquals(4, reader.getLong());
+        assertEquals(Token.END_ARRAY, reader.nextToken());
+        assertEquals(Token.PROPERTY, reader.nextToken());
+        assertEquals("f", reader.getString());
+        assertEquals(Token.LONG, reader.nextToken());
+        assertEquals(5.0, reader.getDouble());
+        assertEquals(Token.END_OBJECT, reader.nextToken());
+        assertEquals(Token.END, reader.nextToken());
+        assertEquals(Token.END, reader.nextToken());
+    }
+
+    public void testSymbolTable() {
+        JSONSymbolTable table = new JSONSymbolTable();
+        JSONReader first = new JSONReader(new CharStream("{name:1}"), table);
+        JSONReader second = new JSONReader(
+            new CharStream("{'name':2}"),
+            table);
+        first.nextToken();
+        second.nextToken();
+        assertEquals(Token.PROPERTY, first.nextToken());
+        assertEquals(Token.PROPERTY, second.nextToken());
+        assertSame(first.getString(), second.getString());
+    }
+
+    public void testTokens() {
+        test(
+            "{a:1, b:-2.5, c:true, d:null, e:'text', f:[1, 'x', false], g:{}}",
+            "{<a>(L:1)<b>(D:-2.5)<c>(B:true)<d>(N)<e>(S:text)"
+                + "<f>[(L:1)(S:x)(B:false)]<g>{}}");
+        JSONReader reader = new JSONReader("{a:'x'}");
+        assertNull(reader.getToken());
+        reader.nextToken();
+        try {
+            reader.getLong();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertNull(reader.getText());
+    }
+
+    private void test(String str, String control) {
+        JSONReader reader = new JSONReader(str);
+        assertEquals(control, read(reader));
+        assertEquals(0, reader.getDepth());
+    }
+
+}
@@ -0,0 +1,267 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.json;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.json.IJSONListener;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONSymbolTable;
+import org.ubimix.commons.parsers.json.JSONTapePlayer;
+import org.ubimix.commons.parsers.json.JSONTapeRecorder;
+import org.ubimix.commons.parsers.json.JSONWriter;
+
+/**
+ * @author kotelnikov
+ */
+public class JSONTapeTest extends TestCase {
+
+    /**
+     * This listener hides the typed interface of the wrapped listener, so
+     * the parser gives all values as strings.
+     */
+    private static class UntypedListener implements IJSONListener {
+
+        private IJSONListener fListener;
+
+        public UntypedListener(IJSONListener listener) {
+            fListener = listener;
+        }
+
+        public void beginArray() {
+            fListener.beginArray();
+        }
+
+        public void beginArrayElement() {
+            fListener.beginArrayElement();
+        }
+
+        public void beginObject() {
+            fListener.beginObject();
+        }
+
+        public void beginObjectProperty(String property) {
+            fListener.beginObjectProperty(property);
+        }
+
+        public void endArray() {
+            fListener.endArray();
+        }
+
+        public void endArrayElement() {
+            fListener.endArrayElement();
+        }
+
+        public void endObject() {
+            fListener.endObject();
+        }
+
+        public void endObjectProperty(String property) {
+            fListener.endObjectProperty(property);
+        }
+
+        public void onValue(String value) {
+            fListener.onValue(value);
+        }
+
+    }
+
+    private static final String[] DOCS = {
+        "{}",
+        "{ x : y    }",
+        "{ x :   }",
+        "{a, b:}",
+        "{ a : {b:B, \"c\" : 'C'   }, d:[[], {}, [1, [2]]] }",
+        "{a:1, b:-2.5e3, c:true, d:null, e:007, f:-9223372036854775808}",
+        "{'ключ':'значение', \"€\":café, x:\"😀\\n\\u0001\"}",
+        "{a:1, b:{a:2, b:{a:3, c:[{a:4}]}}}",
+        "{a:123456789012345678901234, b:1e5, c:1.50, d:-0, e:null, f:}" };
+
+    /**
+     * @param name
+     */
+    public JSONTapeTest(String name) {
+        super(name);
+    }
+
+    private byte[] concat(byte[] head, int offset, int len, byte[]... tails) {
+        int size = len;
+        for (byte[] tail : tails) {
+            size += tail.length;
+        }
+        byte[] result = new byte[size];
+        System.arraycopy(head, offset, result, 0, len);
+        int pos = len;
+        for (byte[] tail : tails) {
+            System.arraycopy(tail, 0, result, pos, tail.length);
+            pos += tail.length;
+        }
+        return result;
+    }
+
+    private byte[] record(String doc, boolean typed) {
+        JSONTapeRecorder recorder = new JSONTapeRecorder();
+        new JSONParser().parse(doc, typed
+            ? recorder
+            : new UntypedListener(recorder));
+        return recorder.toByteArray();
+    }
+
+    public void testErrors() {
+        JSONTapePlayer player = new JSONTapePlayer();
+        assertFalse(JSONTapePlayer.isTape(new byte[] { 'J' }));
+        assertFalse(JSONTapePlayer.isTape("{}".getBytes()));
+        byte[] tape = record(DOCS[4], true);
+        assertTrue(JSONTapePlayer.isTape(tape));
+        byte[][] invalid = {
+            "{}".getBytes(),
+            new byte[] { tape[0], tape[1], tape[2], 100 },
+            new byte[] { tape[0], tape[1], tape[2], 13, 5 } };
+        for (byte[] bytes : invalid) {
+            try {
+                player.play(bytes, new JSONListener());
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        // A truncated tape
+        try {
+            player.play(tape, 0, tape.length - 3, new JSONListener());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // Corrupted varints: a negative string length, a negative name
+        // index and a truncated value
+        byte[] negative = { -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 };
+        byte[][] corrupted = {
+            concat(tape, 0, 3, new byte[] { 3, 14 }, negative),
+            concat(tape, 0, 3, new byte[] { 3, 12 }, negative),
+            concat(tape, 0, 3, new byte[] { 3, 13 }, negative),
+            concat(tape, 0, 3, new byte[] { 3, 12, -1, -1 }) };
+        for (byte[] bytes : corrupted) {
+            try {
+                player.play(bytes, new JSONListener());
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+
+    public void testNames() {
+        JSONTapeRecorder recorder = new JSONTapeRecorder();
+        StringBuilder doc = new StringBuilder("{list:[");
+        for (int i = 0; i < 100; i++) {
+            doc.append("{identifier:").append(i).append(", description:x},");
+        }
+        doc.append("]}");
+        new JSONParser().parse(doc.toString(), recorder);
+        // Names are written only once
+        assertTrue(recorder.getLength() < doc.length() * 2 / 3);
+
+        JSONSymbolTable table = new JSONSymbolTable();
+        JSONTapePlayer player = new JSONTapePlayer(table);
+        final String[] names = new String[2];
+        JSONListener listener = new JSONListener() {
+            @Override
+            public void beginObjectProperty(String property) {
+                if ("identifier".equals(property)) {
+                    names[names[0] == null ? 0 : 1] = property;
+                }
+            }
+        };
+        byte[] tape = recorder.toByteArray();
+        player.play(tape, listener);
+        player.play(tape, listener);
+        assertSame(names[0], names[1]);
+        assertSame(table.getSymbol("identifier"), names[0]);
+
+        recorder.reset();
+        new JSONParser().parse("{a:b}", recorder);
+        assertEquals("{a:'b'}", play(recorder.toByteArray()));
+    }
+
+    public void testLegacyReplay() {
+        // Replayed values are the same as values given by the parser
+        for (String doc : DOCS) {
+            StringBuilder out = new StringBuilder();
+            JSONWriter writer = new JSONWriter(out);
+            new JSONParser().parse(doc, new UntypedListener(writer));
+            writer.flush();
+            String control = out.toString();
+            out.setLength(0);
+            new JSONTapePlayer().play(
+                record(doc, true),
+                new UntypedListener(writer));
+            writer.flush();
+            assertEquals(doc, control, out.toString());
+        }
+    }
+
+    public void testReplay() {
+        for (String doc : DOCS) {
+            for (boolean typed : new boolean[] { true, false }) {
+                StringBuilder out = new StringBuilder();
+                JSONWriter writer = new JSONWriter(out);
+                new JSONParser().parse(doc, typed
+                    ? writer
+                    : new UntypedListener(writer));
+                writer.flush();
+                assertEquals(doc, out.toString(), play(record(doc, typed)));
+            }
+        }
+    }
+
+    public void testUntypedReplay() {
+        JSONTapeRecorder recorder = new JSONTapeRecorder();
+        recorder.beginObject();
+        recorder.beginObjectProperty("a");
+        recorder.onLong(-5);
+        recorder.endObjectProperty("a");
+        recorder.beginObjectProperty("b");
+        recorder.onDouble(0.25);
+        recorder.endObjectProperty("b");
+        recorder.beginObjectProperty("c");
+        recorder.onBoolean(false);
+        recorder.endObjectProperty("c");
+        recorder.beginObjectProperty("d");
+        recorder.onValue(null);
+        recorder.endObjectProperty("d");
+        recorder.beginObjectProperty("e");
+        recorder.onNull();
+        recorder.endObjectProperty("e");
+        recorder.endObject();
+        final StringBuilder buf = new StringBuilder();
+        new JSONTapePlayer().play(recorder.toByteArray(), new JSONListener() {
+            @Override
+            public void onValue(String value) {
+                buf.append(value != null ? value : "-").append(";");
+            }
+        });
+        assertEquals("-5;0.25;false;-;null;", buf.toString());
+    }
+
+    private String play(byte[] tape) {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        new JSONTapePlayer().play(tape, writer);
+        writer.flush();
+        return out.toString();
+    }
+
+}
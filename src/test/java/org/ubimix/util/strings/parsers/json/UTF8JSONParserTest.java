@@ -0,0 +1,258 @@
+/* ************************************************************************** *
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ * 
+ * This file is licensed to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * ************************************************************************** */
+package org.ubimix.util.strings.parsers.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import org.ubimix.commons.parsers.json.IJSONListener;
+import org.ubimix.commons.parsers.json.JSONListener;
+import org.ubimix.commons.parsers.json.JSONParser;
+import org.ubimix.commons.parsers.json.JSONSymbolTable;
+import org.ubimix.commons.parsers.json.JSONWriter;
+import org.ubimix.commons.parsers.json.UTF8JSONParser;
+
+/**
+ * @author kotelnikov
+ */
+public class UTF8JSONParserTest extends TestCase {
+
+    /**
+     * Records all events using the untyped {@link IJSONListener} interface.
+     */
+    private static class EventRecorder implements IJSONListener {
+
+        private StringBuilder fBuf = new StringBuilder();
+
+        public void beginArray() {
+            fBuf.append("[");
+        }
+
+        public void beginArrayElement() {
+            fBuf.append("<");
+        }
+
+        public void beginObject() {
+            fBuf.append("{");
+        }
+
+        public void beginObjectProperty(String property) {
+            fBuf.append("(").append(property).append(":");
+        }
+
+        public void endArray() {
+            fBuf.append("]");
+        }
+
+        public void endArrayElement() {
+            fBuf.append(">");
+        }
+
+        public void endObject() {
+            fBuf.append("}");
+        }
+
+        public void endObjectProperty(String property) {
+            fBuf.append(")");
+        }
+
+        public void onValue(String value) {
+            fBuf.append("'").append(value).append("'");
+        }
+
+        @Override
+        public String toString() {
+            return fBuf.toString();
+        }
+
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String[] DOCS = {
+        "",
+        "{}",
+        "  { x : y    }    ",
+        "  { x :   }    ",
+        "{a, b:}",
+        "{,a:1}",
+        "{ x : [ A,  B, C]   }",
+        "{ a : {b:B, \"c\" : 'C'   } }",
+        "{x:'a\\nb\\u0041\\u12z\\'\\\\'}",
+        "{a:1, b:-2.5e3, c:true, d:null, e:007, f:[1,[2,[3]]]}",
+        "junk {'ключ':'значение', \"€\":café, 'x\\u00e9':\"😀\\n\"}",
+        "{a:[1,{b:'c",
+        "{a:'\\",
+        "{bad:'é€" };
+
+    /**
+     * @param name
+     */
+    public UTF8JSONParserTest(String name) {
+        super(name);
+    }
+
+    public void testBuffers() {
+        String str = "{\"a\":\"é\", b:[1, 'x']}";
+        byte[] bytes = ("xx" + str).getBytes(UTF8);
+        String control = write(str, false);
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        heap.position(2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.position(2);
+        for (ByteBuffer buffer : new ByteBuffer[] { heap, direct }) {
+            StringBuilder out = new StringBuilder();
+            JSONWriter writer = new JSONWriter(out);
+            new UTF8JSONParser().parse(buffer.slice(), writer);
+            writer.flush();
+            assertEquals(control, out.toString());
+            assertEquals(2, buffer.position());
+        }
+
+        // Big and small direct buffers parsed by the same parser
+        UTF8JSONParser parser = new UTF8JSONParser();
+        for (int size : new int[] { 100000, 10, 100000 }) {
+            StringBuilder buf = new StringBuilder("{a:'");
+            for (int i = 0; i < size; i++) {
+                buf.append((char) ('a' + i % 26));
+            }
+            buf.append("'}");
+            String doc = buf.toString();
+            bytes = doc.getBytes(UTF8);
+            direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes);
+            direct.flip();
+            StringBuilder out = new StringBuilder();
+            JSONWriter writer = new JSONWriter(out);
+            assertEquals(1, parser.parseStream(direct, writer));
+            writer.flush();
+            assertEquals(write(doc, false), out.toString());
+        }
+    }
+
+    public void testEvents() {
+        for (String doc : DOCS) {
+            EventRecorder control = new EventRecorder();
+            new JSONParser().parse(doc, control);
+            EventRecorder test = new EventRecorder();
+            new UTF8JSONParser().parse(doc.getBytes(UTF8), test);
+            assertEquals(doc, control.toString(), test.toString());
+        }
+    }
+
+    public void testMalformed() {
+        byte[] bytes = { '{', 'a', ':', '\'', (byte) 0xC3, '\'', ',', 'b',
+            ':', (byte) 0xFF, '}' };
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        new UTF8JSONParser().parse(bytes, writer);
+        writer.flush();
+        assertEquals("{a:'\uFFFD',b:'\uFFFD'}", out.toString());
+
+        // Malformed sequences are replaced as by the decoder of the JDK
+        byte[] value = { 'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82,
+            'c', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd', (byte) 0xF0,
+            (byte) 0x9F, (byte) 0x98, (byte) 0x80, (byte) 0xC0, (byte) 0xAF,
+            (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80, (byte) 0xFF,
+            'e', (byte) 0xF0, (byte) 0x9F };
+        bytes = new byte[value.length + 6];
+        System.arraycopy("{a:'".getBytes(UTF8), 0, bytes, 0, 4);
+        System.arraycopy(value, 0, bytes, 4, value.length);
+        bytes[bytes.length - 2] = '\'';
+        bytes[bytes.length - 1] = '}';
+        final StringBuilder buf = new StringBuilder();
+        new UTF8JSONParser().parse(bytes, new JSONListener() {
+            @Override
+            public void onValue(String v) {
+                buf.append(v);
+            }
+        });
+        assertEquals(new String(value, UTF8), buf.toString());
+    }
+
+    public void testStream() {
+        String str = "\uFEFF{a:1}\n[1,2] 'x' 5 ,] {c:3}\n\"é\"";
+        for (boolean typed : new boolean[] { true, false }) {
+            StringBuilder control = new StringBuilder();
+            StringBuilder test = new StringBuilder();
+            IJSONListener first;
+            IJSONListener second;
+            if (typed) {
+                first = new JSONWriter(control);
+                second = new JSONWriter(test);
+            } else {
+                first = new EventRecorder();
+                second = new EventRecorder();
+            }
+            int count = new JSONParser().parseStream(str.substring(1), first);
+            byte[] bytes = str.getBytes(UTF8);
+            assertEquals(count, new UTF8JSONParser().parseStream(
+                bytes,
+                0,
+                bytes.length,
+                second));
+            if (typed) {
+                ((JSONWriter) first).flush();
+                ((JSONWriter) second).flush();
+                assertEquals(control.toString(), test.toString());
+            } else {
+                assertEquals(first.toString(), second.toString());
+            }
+        }
+    }
+
+    public void testSymbolTable() {
+        JSONSymbolTable table = new JSONSymbolTable();
+        UTF8JSONParser parser = new UTF8JSONParser(table);
+        final String[] names = new String[2];
+        IJSONListener listener = new EventRecorder() {
+            private int fCount;
+
+            @Override
+            public void beginObjectProperty(String property) {
+                names[fCount++] = property;
+            }
+        };
+        parser.parse("{name:1}".getBytes(UTF8), listener);
+        parser.parse("{\"name\":2}".getBytes(UTF8), listener);
+        assertEquals("name", names[0]);
+        assertSame(names[0], names[1]);
+    }
+
+    public void testTyped() {
+        for (String doc : DOCS) {
+            assertEquals(doc, write(doc, false), write(doc, true));
+        }
+    }
+
+    private String write(String doc, boolean utf8) {
+        StringBuilder out = new StringBuilder();
+        JSONWriter writer = new JSONWriter(out);
+        if (utf8) {
+            new UTF8JSONParser().parse(doc.getBytes(UTF8), writer);
+        } else {
+            new JSONParser().parse(doc, writer);
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+}